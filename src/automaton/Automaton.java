@@ -29,7 +29,6 @@
 
 package automaton;
 
-import lxl.ArrayList;
 import lxl.Collection;
 import lxl.List;
 import lxl.Map;
@@ -45,6 +44,7 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * @author Anders Møller
@@ -67,10 +67,33 @@ public class Automaton
     public static final int MINIMIZE_BRZOZOWSKI = 1;
     public static final int MINIMIZE_HOPCROFT = 2;
     public static final int MINIMIZE_NONE = 3;
+    public static final int MINIMIZE_VALMARI = 4;
+    public static final int MINIMIZE_PARALLEL = 5;
+    /**
+     * Minimization of new automata, by name ("huffman",
+     * "brzozowski", "hopcroft", "none", "valmari" or "parallel") in
+     * the system property "automaton.Automaton.Minimization", and
+     * otherwise hopcroft.
+     */
+    public final static int DefaultMinimization;
+    static {
+        int minimization = MINIMIZE_HOPCROFT;
+        String config = System.getProperty("automaton.Automaton.Minimization");
+        if (null != config){
+            String[] names = {"huffman","brzozowski","hopcroft","none","valmari","parallel"};
+            for (int n = 0; n < names.length; n++){
+                if (names[n].equalsIgnoreCase(config)){
+                    minimization = n;
+                    break;
+                }
+            }
+        }
+        DefaultMinimization = minimization;
+    }
 
 
 
-    protected int minimization = MINIMIZE_HOPCROFT;
+    protected int minimization = DefaultMinimization;
         
     protected State initial;
         
@@ -79,8 +102,20 @@ public class Automaton
     protected transient Object info;
         
     protected int hash_code;
+    /*
+     * Canonical fingerprint, valid when hash code is not zero
+     */
+    protected long fingerprint;
         
     protected String singleton;
+
+    protected boolean frozen;
+    /*
+     * Count of modifications through this automaton
+     */
+    protected int modification;
+
+    private transient Snapshot snapshot;
         
 
     public Automaton() {
@@ -110,6 +145,36 @@ public class Automaton
         this.minimization = algorithm;
         return this;
     }
+    /**
+     * Convert the transitions of every state into sorted arrays for
+     * binary search stepping and traversal without iterators.  A
+     * frozen automaton rejects mutation with an {@link
+     * java.lang.IllegalStateException}, and may be shared among
+     * threads.  Operations that would modify a frozen automaton
+     * require a {@link #clone()}, which is not frozen.
+     */
+    public Automaton freeze() {
+        if (!this.frozen){
+            this.expandSingleton();
+            for (State s : this.getStateArray()){
+                s.freeze();
+            }
+            this.frozen = true;
+        }
+        return this;
+    }
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+    /**
+     * @exception java.lang.IllegalStateException For a frozen automaton
+     */
+    protected Automaton checkMutable() {
+        if (this.frozen)
+            throw new IllegalStateException("Frozen automaton");
+        else
+            return this;
+    }
     public Automaton checkMinimizeAlways() {
         //minimize();
         return this;
@@ -121,6 +186,8 @@ public class Automaton
         return singleton;
     }
     public Automaton setInitialState(State s) {
+        checkMutable();
+        modified();
         initial = s;
         singleton = null;
         return this;
@@ -143,49 +210,44 @@ public class Automaton
     public Object getInfo(){
         return info;
     }
+    /**
+     * @return Set of states reachable from the initial state, in
+     * order of state number
+     * @see #getStateArray()
+     */
     public Set<State> getStates() {
-        expandSingleton();
-        Set<State> visited = new Set<State>();
-        List<State> worklist = new ArrayList<State>();
-        worklist.add(initial);
-        visited.add(initial);
-        while (worklist.isNotEmpty()) {
-            State s = worklist.removeFirst();
-
-            for (Transition t : s){
-                if (!visited.contains(t.to)) {
-                    visited.add(t.to);
-                    worklist.add(t.to);
-                }
-            }
-        }
-        return visited;
+        State[] states = getStateArray();
+        Set<State> set = new Set<State>(states.length);
+        for (State s : states)
+            set.add(s);
+        return set;
+    }
+    /**
+     * States reachable from the initial state are numbered from zero
+     * for the initial state, in breadth first order.  The numbering
+     * is made on the first call after a modification of this
+     * automaton or of any state, and retained until the next, without
+     * reference to the states in between.
+     * 
+     * @return States by number, shared with this automaton, not to be
+     * modified
+     */
+    protected State[] getStateArray() {
+        return snapshot().states;
     }
     public Set<State> getAcceptStates() {
-        expandSingleton();
         Set<State> accepts = new Set<State>();
-        Set<State> visited = new Set<State>();
-        List<State> worklist = new ArrayList<State>();
-        worklist.add(initial);
-        visited.add(initial);
-        while (worklist.isNotEmpty()) {
-            State s = worklist.removeFirst();
+        for (State s : getStateArray()){
             if (s.accept)
                 accepts.add(s);
-
-            for (Transition t : s){
-                if (!visited.contains(t.to)) {
-                    visited.add(t.to);
-                    worklist.add(t.to);
-                }
-            }
         }
         return accepts;
     }
     protected Automaton totalize() {
+        checkMutable();
         State s = new State("totalize");
         s.add(new Transition(Character.MIN_VALUE, Character.MAX_VALUE, s));
-        for (State p : getStates()) {
+        for (State p : getStateArray()) {
             int maxi = Character.MIN_VALUE;
             for (Transition t : p.getSortedTransitions(false)) {
                 if (t.min > maxi)
@@ -203,10 +265,9 @@ public class Automaton
     }
     public Automaton reduce() {
         if (!this.isSingleton()){
+            checkMutable();
 
-            Set<State> states = getStates();
-            SetStateNumbers(states);
-            for (State s : states) {
+            for (State s : getStateArray()) {
                 List<Transition> st = s.getSortedTransitions(true);
                 s.resetTransitions();
                 State p = null;
@@ -238,60 +299,71 @@ public class Automaton
         return this;
     }
     public char[] getStartPoints() {
-        Set<Character> pointset = new Set<Character>();
-        for (State s : getStates()) {
-            pointset.add(Character.MIN_VALUE);
-            for (Transition t : s) {
-                pointset.add(t.min);
-                if (t.max < Character.MAX_VALUE)
-                    pointset.add((char)(t.max + 1));
-            }
-        }
-        char[] points = new char[pointset.size()];
-        int n = 0;
-        for (Character m : pointset)
-            points[n++] = m;
-        Arrays.sort(points);
-        return points;
+        return snapshot().getStartPoints().clone();
     }
     public Set<State> getLiveStates() {
-        expandSingleton();
-        return getLiveStates(getStates());
-    }
-    private Set<State> getLiveStates(Set<State> states) {
-        Map<State, Set<State>> map = new Map<State, Set<State>>();
+        State[] states = getStateArray();
+        BitSet live = getLiveStates(states);
+        Set<State> set = new Set<State>();
+        for (int s = live.nextSetBit(0); -1 < s; s = live.nextSetBit(s+1))
+            set.add(states[s]);
+        return set;
+    }
+    /**
+     * @param states Numbered states from {@link #getStateArray()}
+     * @return State numbers of live states
+     */
+    private BitSet getLiveStates(State[] states) {
+        final int size = states.length;
+        /*
+         * Reverse adjacency by destination state number
+         */
+        int[] offset = new int[size+1];
         for (State s : states){
-            map.put(s, new Set<State>());
+            for (Transition t : s)
+                offset[t.to.number+1] += 1;
         }
+        for (int n = 0; n < size; n++)
+            offset[n+1] += offset[n];
+        int[] source = new int[offset[size]];
+        int[] fill = Arrays.copyOf(offset,size);
         for (State s : states){
-            for (Transition t : s){
-                map.get(t.to).add(s);
-            }
+            for (Transition t : s)
+                source[fill[t.to.number]++] = s.number;
         }
-        Set<State> live = new Set<State>(getAcceptStates());
-        List<State> worklist = new ArrayList<State>(live);
-        while (worklist.isNotEmpty()) {
-            State s = worklist.removeFirst();
-            for (State p : map.get(s)){
-                if (!live.contains(p)) {
-                    live.add(p);
-                    worklist.add(p);
+        BitSet live = new BitSet(size);
+        for (int n = 0; n < size; n++){
+            if (states[n].accept)
+                live.set(n);
+        }
+        int[] worklist = fill;
+        int head = 0, tail = 0;
+        for (int s = live.nextSetBit(0); -1 < s; s = live.nextSetBit(s+1))
+            worklist[tail++] = s;
+        while (head < tail) {
+            int s = worklist[head++];
+            for (int n = offset[s]; n < offset[s+1]; n++){
+                int p = source[n];
+                if (!live.get(p)) {
+                    live.set(p);
+                    worklist[tail++] = p;
                 }
             }
         }
         return live;
     }
     public Automaton removeDeadTransitions() {
+        checkMutable();
         clearHashCode();
         if (isSingleton())
             return this;
         else {
-            Set<State> states = getStates();
-            Set<State> live = getLiveStates(states);
+            State[] states = getStateArray();
+            BitSet live = getLiveStates(states);
             for (State s : states) {
                 Set<Transition> st = s.resetTransitions();
                 for (Transition t : st){
-                    if (live.contains(t.to))
+                    if (live.get(t.to.number))
                         s.add(t);
                 }
             }
@@ -310,6 +382,7 @@ public class Automaton
             p.accept = true;
             deterministic = true;
             singleton = null;
+            modified();
         }
 	return this;
     }
@@ -317,18 +390,13 @@ public class Automaton
         if (isSingleton())
             return singleton.length() + 1;
         else
-            return getStates().size();
+            return getStateArray().length;
     }
     public int getNumberOfTransitions() {
         if (isSingleton())
             return singleton.length();
-        else {
-            int c = 0;
-            for (State s : getStates()){
-                c += s.size();
-            }
-            return c;
-        }
+        else
+            return snapshot().transitions;
     }
     public boolean equals(Object obj) {
         if (obj == this)
@@ -339,26 +407,73 @@ public class Automaton
             Automaton a = (Automaton)obj;
             if (isSingleton() && a.isSingleton())
                 return singleton.equals(a.singleton);
+            else if (0 != hash_code && 0 != a.hash_code && fingerprint != a.fingerprint)
+                return false;
             else
-                return hashCode() == a.hashCode() && subsetOf(a) && a.subsetOf(this);
+                return (null == BasicOperations.EquivalenceCounterexample(this, a));
         }
     }
+    /**
+     * Language equivalent automata have the same hash code.  The
+     * receiver is not modified.
+     * @see #getFingerprint()
+     */
     public int hashCode() {
         if (hash_code == 0)
-            minimize();
+            getFingerprint();
         return hash_code;
     }
+    /**
+     * The fingerprint is computed once from a copy of this automaton
+     * and cached until the next modification.  The receiver is not
+     * modified.
+     * @return Canonical fingerprint of the language of this automaton
+     * @see Packed#fingerprint()
+     */
+    public long getFingerprint() {
+        if (hash_code == 0){
+            Packed p = MinimizationOperations.Minimize(Packed.From(this));
+            long fingerprint = p.fingerprint();
+            int hash_code = (int)(fingerprint ^ (fingerprint >>> 32));
+            if (hash_code == 0)
+                hash_code = 1;
+            this.fingerprint = fingerprint;
+            this.hash_code = hash_code;
+        }
+        return fingerprint;
+    }
+    /**
+     * Drop the cached fingerprint, for recomputation on demand.
+     */
     protected Automaton recomputeHashCode() {
-        hash_code = getNumberOfStates() * 3 + getNumberOfTransitions() * 2;
-        if (hash_code == 0)
-            hash_code = 1;
+        hash_code = 0;
 
         return this;
     }
     protected Automaton clearHashCode() {
         hash_code = 0;
+        return modified();
+    }
+    /**
+     * Count a modification, and drop the state numbering.
+     */
+    protected Automaton modified() {
+        this.modification += 1;
+        this.snapshot = null;
         return this;
     }
+    /**
+     * @return Valid state numbering, renumbering states as required
+     */
+    protected Snapshot snapshot() {
+        expandSingleton();
+        Snapshot snapshot = this.snapshot;
+        if (null == snapshot || (!snapshot.isValid(this))){
+            snapshot = new Snapshot(this);
+            this.snapshot = snapshot;
+        }
+        return snapshot;
+    }
     public String toString() {
         StringBuilder b = new StringBuilder();
         if (isSingleton()) {
@@ -367,8 +482,7 @@ public class Automaton
                 Transition.appendCharString(c, b);
             b.append("\n");
         } else {
-            Set<State> states = getStates();
-            SetStateNumbers(states);
+            State[] states = getStateArray();
             b.append("initial state: ").append(initial.number).append("\n");
             for (State s : states)
                 b.append(s.toString());
@@ -386,22 +500,23 @@ public class Automaton
     public Automaton clone() {
         try {
             Automaton a = (Automaton)super.clone();
+            a.frozen = false;
+            a.snapshot = null;
             if (!isSingleton()) {
-                Map<State, State> m = new Map<State, State>();
-                Set<State> states = getStates();
+                State[] states = getStateArray();
+                State[] copies = new State[states.length];
                 for (State s : states){
-                    m.put(s, new State(s));
+                    State p = new State(s);
+                    p.accept = s.accept;
+                    copies[s.number] = p;
                 }
                 for (State s : states) {
-                    State p = m.get(s);
-                    p.accept = s.accept;
-                    if (s == this.initial){
-                        a.initial = p;
-                    }
+                    State p = copies[s.number];
                     for (Transition t : s){
-                        p.add(new Transition(t.min, t.max, m.get(t.to)));
+                        p.add(new Transition(t.min, t.max, copies[t.to.number]));
                     }
                 }
+                a.initial = copies[this.initial.number];
             }
             return a;
         } catch (CloneNotSupportedException e) {
@@ -439,14 +554,37 @@ public class Automaton
     public boolean subsetOf(Automaton a) {
         return BasicOperations.SubsetOf(this, a);
     }
+    public String subsetCounterexample(Automaton a) {
+        return BasicOperations.SubsetCounterexample(this, a);
+    }
+    public String intersectionExample(Automaton a) {
+        return BasicOperations.IntersectionExample(this, a);
+    }
+    public String equivalenceCounterexample(Automaton a) {
+        return BasicOperations.EquivalenceCounterexample(this, a);
+    }
     public Automaton union(Automaton a) {
         return BasicOperations.Union(this, a);
     }
     public Automaton determinize() {
+        if (!this.deterministic)
+            checkMutable();
         BasicOperations.Determinize(this);
         return this;
     }
+    /**
+     * @param executor Parallel subset construction, or null for
+     * construction on the calling thread
+     * @see BasicOperations#Determinize(Packed,int[],java.util.concurrent.ExecutorService)
+     */
+    public Automaton determinize(java.util.concurrent.ExecutorService executor) {
+        if (!this.deterministic)
+            checkMutable();
+        BasicOperations.Determinize(this, executor);
+        return this;
+    }
     public Automaton addEpsilons(Collection<StatePair> pairs) {
+        checkMutable();
         BasicOperations.AddEpsilons(this, pairs);
         return this;
     }
@@ -463,9 +601,17 @@ public class Automaton
         return BasicOperations.Run(this, s);
     }
     public Automaton minimize() {
+        checkMutable();
         MinimizationOperations.Minimize(this);
         return this;
     }
+    /**
+     * @return Struct of arrays copy of this automaton
+     * @see Packed#toAutomaton()
+     */
+    public Packed pack() {
+        return Packed.From(this);
+    }
     public Automaton overlap(Automaton a) {
         return SpecialOperations.Overlap(this, a);
     }
@@ -519,16 +665,99 @@ public class Automaton
         return ShuffleOperations.Shuffle(this, a);
     }
         
-    protected static void SetStateNumbers(Set<State> states) {
-        int number = 0;
-        for (State s : states)
-            s.number = number++;
-    }
-    protected static Transition[][] GetSortedTransitions(Set<State> states) {
-        SetStateNumbers(states);
-        Transition[][] transitions = new Transition[states.size()][];
+    /**
+     * @param states Numbered states from {@link #getStateArray()}
+     */
+    protected static Transition[][] GetSortedTransitions(State[] states) {
+        Transition[][] transitions = new Transition[states.length][];
         for (State s : states)
             transitions[s.number] = s.getSortedTransitionArray(false);
         return transitions;
     }
+
+    /**
+     * Numbered states reachable from the initial state, valid while
+     * the automaton retains its modification count and initial
+     * state, and no state has been modified.  The states of a frozen
+     * automaton are not modified, so its snapshot remains valid.
+     */
+    protected final static class Snapshot
+        extends Object
+    {
+        protected final int modification;
+        protected final int stateModification;
+        protected final State[] states;
+        protected final int transitions;
+
+        private volatile char[] points;
+
+
+        protected Snapshot(Automaton a){
+            super();
+            this.modification = a.modification;
+            this.stateModification = State.Modifications;
+            /*
+             * Breadth first numbering, where a state has been visited
+             * when its number indexes itself
+             */
+            State[] states = new State[0x10];
+            int count = 0, transitions = 0;
+            State initial = a.initial;
+            initial.number = count;
+            states[count++] = initial;
+            for (int head = 0; head < count; head++){
+                State s = states[head];
+                if (null != s.frozen_to){
+                    for (State to : s.frozen_to){
+                        transitions += 1;
+                        if (to.number < 0 || to.number >= count || states[to.number] != to){
+                            if (count == states.length)
+                                states = Arrays.copyOf(states,(2*count));
+                            to.number = count;
+                            states[count++] = to;
+                        }
+                    }
+                }
+                else {
+                    for (Transition t : s){
+                        State to = t.to;
+                        transitions += 1;
+                        if (to.number < 0 || to.number >= count || states[to.number] != to){
+                            if (count == states.length)
+                                states = Arrays.copyOf(states,(2*count));
+                            to.number = count;
+                            states[count++] = to;
+                        }
+                    }
+                }
+            }
+            if (count < states.length)
+                states = Arrays.copyOf(states,count);
+            this.states = states;
+            this.transitions = transitions;
+        }
+
+
+        /**
+         * Compares modification counts, without reference to the
+         * states
+         */
+        protected boolean isValid(Automaton a){
+            return (a.modification == this.modification && a.initial == this.states[0]
+                    && (a.frozen || State.Modifications == this.stateModification));
+        }
+        protected char[] getStartPoints(){
+            char[] points = this.points;
+            if (null == points){
+                CharRangeSet.Partition partition = new CharRangeSet.Partition(this.transitions);
+                for (State s : this.states) {
+                    for (Transition t : s)
+                        partition.add(t.min, t.max);
+                }
+                points = partition.getStartPoints();
+                this.points = points;
+            }
+            return points;
+        }
+    }
 }
@@ -87,16 +87,31 @@ public final class BasicAutomata {
     public static Automaton MakeCharSet(String set) {
         if (set.length() == 1)
             return MakeChar(set.charAt(0));
-        else {
-            Automaton a = new Automaton();
+        else
+            return MakeCharSet(CharRangeSet.Of(set));
+    }
+    /**
+     * @param table Range table of (min, max) pairs
+     */
+    public static Automaton MakeCharSet(char[] table) {
+
+        return MakeCharSet(CharRangeSet.Of(table, table.length));
+    }
+    /**
+     * @return Minimal deterministic automaton of two states, with a
+     * transition for each range of the set
+     */
+    public static Automaton MakeCharSet(CharRangeSet set) {
+        Automaton a = new Automaton();
+        if (!set.isEmpty()){
             State s1 = a.initial;
             State s2 = new State(true);
 
-            for (int i = 0; i < set.length(); i++){
-                s1.add(new Transition(set.charAt(i), s2));
+            for (int n = 0, count = set.size(); n < count; n++){
+                s1.add(new Transition(set.getMin(n), set.getMax(n), s2));
             }
-            return a.reduce();
         }
+        return a;
     }
     private static State anyOfRightLength(String x, int n) {
         State s = new State();
@@ -35,13 +35,106 @@ import lxl.List;
 import lxl.Map;
 import lxl.Set;
 
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
  * @author Anders Møller
  */
 public final class BasicOperations {
+    /**
+     * System property
+     * <code>automaton.BasicOperations.Parallelism</code> is the
+     * number of threads of the default executor of subset
+     * construction, or zero (default) for construction on the
+     * calling thread.
+     * @see #SetExecutor(java.util.concurrent.ExecutorService)
+     */
+    public final static int Parallelism;
+    /**
+     * System property
+     * <code>automaton.BasicOperations.ParallelThreshold</code> is the
+     * least number of states of an automaton for parallel subset
+     * construction, default 0x4000.
+     */
+    public final static int ParallelThreshold;
+    static {
+        int parallelism = 0, threshold = 0x4000;
+        try {
+            String config = System.getProperty("automaton.BasicOperations.Parallelism");
+            if (null != config)
+                parallelism = Math.max(0,Integer.parseInt(config));
+            config = System.getProperty("automaton.BasicOperations.ParallelThreshold");
+            if (null != config)
+                threshold = Math.max(0,Integer.parseInt(config));
+        }
+        catch (Throwable ignore){
+        }
+        Parallelism = parallelism;
+        ParallelThreshold = threshold;
+    }
+    /**
+     * Executor running tasks on the calling thread.  As the executor
+     * of the current thread it selects sequential subset
+     * construction, as within the tasks of a parallel construction.
+     * @see #SetExecutor(java.util.concurrent.ExecutorService)
+     */
+    public final static ExecutorService Sequential = new Inline();
+
+    private static ExecutorService DefaultExecutor;
+    /*
+     * Executor of subset construction for the current thread, as
+     * from the context of a regular expression
+     */
+    private final static ThreadLocal<ExecutorService> Executor = new ThreadLocal<ExecutorService>();
+    /**
+     * @return Executor of subset construction for the current thread,
+     * or the default executor, or null for construction on the
+     * calling thread
+     * @see #Parallelism
+     */
+    public static ExecutorService GetExecutor(){
+        ExecutorService executor = Executor.get();
+        if (null != executor)
+            return (Sequential == executor)?(null):(executor);
+        else if (0 < Parallelism){
+            synchronized(BasicOperations.class){
+                if (null == DefaultExecutor){
+                    DefaultExecutor = Executors.newFixedThreadPool(Parallelism, new ThreadFactory(){
+                            public Thread newThread(Runnable r){
+                                Thread thread = new Thread(r,"automaton.BasicOperations.Determinize");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                }
+                return DefaultExecutor;
+            }
+        }
+        else
+            return null;
+    }
+    /**
+     * @param executor Executor of subset construction for the
+     * current thread, or null for the default
+     * @return Previous executor of the current thread, for its
+     * restoration
+     */
+    public static ExecutorService SetExecutor(ExecutorService executor){
+        ExecutorService previous = Executor.get();
+        if (null != executor)
+            Executor.set(executor);
+        else
+            Executor.remove();
+        return previous;
+    }
 
     public static Automaton Concatenate(Automaton a1, Automaton a2) {
         if (a1.isSingleton() && a2.isSingleton())
@@ -147,8 +240,11 @@ public final class BasicOperations {
         return a;
     }
     public static Automaton Repeat(Automaton a, int min) {
+        CharRangeSet ranges;
         if (min == 0)
             return Repeat(a);
+        else if (null != (ranges = CharClass(a)))
+            return Chain(ranges, min, -1);
         else {
             List<Automaton> as = new ArrayList<Automaton>();
             while (min-- > 0){
@@ -159,11 +255,15 @@ public final class BasicOperations {
         }
     }
     public static Automaton Repeat(Automaton a, int min, int max) {
+        CharRangeSet ranges;
         if (min > max)
             return BasicAutomata.MakeEmpty(false);
+        else if (0 < max && null != (ranges = CharClass(a)))
+            return Chain(ranges, min, max);
         else {
             max -= min;
-            a.expandSingleton();
+            if (a.isSingleton())
+                a = a.cloneExpanded();
             Automaton b;
             if (min == 0)
                 b = BasicAutomata.MakeEmptyString();
@@ -195,6 +295,69 @@ public final class BasicOperations {
             return b;
         }
     }
+    /**
+     * @return The character class when the language of the automaton
+     * is a set of strings of length one, with all transitions from
+     * the initial state into final states without transitions.
+     * Otherwise null.
+     */
+    private static CharRangeSet CharClass(Automaton a) {
+        if (a.isSingleton()) {
+            if (1 == a.singleton.length())
+                return CharRangeSet.Of(a.singleton.charAt(0));
+            else
+                return null;
+        }
+        else if (a.initial.accept)
+            return null;
+        else {
+            Transition[] transitions = a.initial.getSortedTransitionArray(false);
+            if (0 == transitions.length)
+                return null;
+            else {
+                char[] ranges = new char[2*transitions.length];
+                int z = 0;
+                for (Transition t : transitions) {
+                    final State to = t.to;
+                    if (to == a.initial || (!to.accept) || to.getTransitions().isNotEmpty())
+                        return null;
+                    else {
+                        ranges[z++] = t.min;
+                        ranges[z++] = t.max;
+                    }
+                }
+                return CharRangeSet.Of(ranges, z);
+            }
+        }
+    }
+    /**
+     * Deterministic repetition of a character class as a chain of
+     * states, in place of concatenated copies and determinization.
+     * The chain has one state per count, up to the bound.
+     * @param max Negative one for no maximum, when the last state
+     * loops
+     */
+    private static Automaton Chain(CharRangeSet ranges, int min, int max) {
+        final int count = ((-1 < max)?(max):(min))+1;
+        State[] states = new State[count];
+        for (int n = 0; n < count; n++)
+            states[n] = new State(min <= n);
+        for (int n = 0; n < count; n++) {
+            State to;
+            if (n+1 < count)
+                to = states[n+1];
+            else if (-1 == max)
+                to = states[n];
+            else
+                break;
+            for (int r = 0, z = ranges.size(); r < z; r++)
+                states[n].add(new Transition(ranges.getMin(r), ranges.getMax(r), to));
+        }
+        Automaton c = new Automaton(states[0]);
+        c.deterministic = true;
+        c.checkMinimizeAlways();
+        return c;
+    }
     public static Automaton Complement(Automaton a) {
         a = a.cloneExpandedIfRequired();
         a.determinize();
@@ -216,8 +379,19 @@ public final class BasicOperations {
             else
                 return a1.cloneIfRequired();
         }
-        else
-            return Intersection(a1, a2.complement());
+        else {
+            /*
+             * Product with the deterministic second automaton, in
+             * place of an intersection with its complement
+             */
+            Product product = new Product(Expanded(a1), Deterministic(a2), Product.DIFFERENCE, true);
+            product.explore(false);
+            Automaton c = product.build();
+            c.deterministic = a1.deterministic;
+            c.reduce();
+            c.checkMinimizeAlways();
+            return c;
+        }
     }
     public static Automaton Intersection(Automaton a1, Automaton a2) {
         if (a1.isSingleton()) {
@@ -235,42 +409,14 @@ public final class BasicOperations {
         else if (a1 == a2)
             return a1.cloneIfRequired();
         else {
-            Transition[][] transitions1 = Automaton.GetSortedTransitions(a1.getStates());
-            Transition[][] transitions2 = Automaton.GetSortedTransitions(a2.getStates());
-            Automaton c = new Automaton();
-            List<StatePair> worklist = new ArrayList<StatePair>();
-            Map<StatePair, StatePair> newstates = new Map<StatePair, StatePair>();
-            StatePair p = new StatePair(c.initial, a1.initial, a2.initial);
-            worklist.add(p);
-            newstates.put(p, p);
-            while (worklist.isNotEmpty()) {
-                p = worklist.removeFirst();
-                p.s.accept = (p.s1.accept && p.s2.accept);
-                Transition[] t1 = transitions1[p.s1.number];
-                Transition[] t2 = transitions2[p.s2.number];
-                for (int n1 = 0, b2 = 0; n1 < t1.length; n1++) {
-                    while (b2 < t2.length && t2[b2].max < t1[n1].min){
-                        b2++;
-                    }
-                    for (int n2 = b2; n2 < t2.length && t1[n1].max >= t2[n2].min; n2++){
-                        if (t2[n2].max >= t1[n1].min) {
-                            StatePair q = new StatePair(t1[n1].to, t2[n2].to);
-                            StatePair r = newstates.get(q);
-                            if (r == null) {
-                                q.s = new State();
-                                worklist.add(q);
-                                newstates.put(q, q);
-                                r = q;
-                            }
-                            char min = t1[n1].min > t2[n2].min ? t1[n1].min : t2[n2].min;
-                            char max = t1[n1].max < t2[n2].max ? t1[n1].max : t2[n2].max;
-                            p.s.add(new Transition(min, max, r.s));
-                        }
-                    }
-                }
-            }
+            /*
+             * Only pairs both reachable and co-reachable become states
+             */
+            Product product = new Product(a1, a2, Product.INTERSECTION, true);
+            product.explore(false);
+            Automaton c = product.build();
             c.deterministic = a1.deterministic && a2.deterministic;
-            c.removeDeadTransitions();
+            c.reduce();
             c.checkMinimizeAlways();
             return c;
         }
@@ -284,50 +430,110 @@ public final class BasicOperations {
             else
                 return a2.run(a1.singleton);
         }
+        else
+            return (null == SubsetCounterexample(a1, a2));
+    }
+    /**
+     * Neither argument is modified.
+     * @return Shortest string accepted by <code>a1</code> and not by
+     * <code>a2</code>, or null when the language of <code>a1</code>
+     * is a subset of the language of <code>a2</code>
+     */
+    public static String SubsetCounterexample(Automaton a1, Automaton a2) {
+        if (a1 == a2)
+            return null;
+        else if (a1.isSingleton()) {
+            if (a2.run(a1.singleton))
+                return null;
+            else
+                return a1.singleton;
+        }
         else {
-            a2.determinize();
-            Transition[][] transitions1 = Automaton.GetSortedTransitions(a1.getStates());
-            Transition[][] transitions2 = Automaton.GetSortedTransitions(a2.getStates());
-            List<StatePair> worklist = new ArrayList<StatePair>();
-            Set<StatePair> visited = new Set<StatePair>();
-            StatePair p = new StatePair(a1.initial, a2.initial);
-            worklist.add(p);
-            visited.add(p);
-            while (worklist.isNotEmpty()) {
-                p = worklist.removeFirst();
-                if (p.s1.accept && !p.s2.accept)
-                    return false;
-                else {
-                    Transition[] t1 = transitions1[p.s1.number];
-                    Transition[] t2 = transitions2[p.s2.number];
-                    for (int n1 = 0, b2 = 0; n1 < t1.length; n1++) {
-                        while (b2 < t2.length && t2[b2].max < t1[n1].min){
-                            b2++;
-                        }
-                        int min1 = t1[n1].min, max1 = t1[n1].max;
-                        for (int n2 = b2; n2 < t2.length && t1[n1].max >= t2[n2].min; n2++) {
-                            if (t2[n2].min > min1)
-                                return false;
-                            if (t2[n2].max < Character.MAX_VALUE) 
-                                min1 = t2[n2].max + 1;
-                            else {
-                                min1 = Character.MAX_VALUE;
-                                max1 = Character.MIN_VALUE;
-                            }
-                            StatePair q = new StatePair(t1[n1].to, t2[n2].to);
-                            if (!visited.contains(q)) {
-                                worklist.add(q);
-                                visited.add(q);
-                            }
-                        }
-                        if (min1 <= max1)
-                            return false;
-                    }
-                }
-            }
-            return true;
+            Product product = new Product(a1, Deterministic(a2), Product.DIFFERENCE, false);
+            int p = product.explore(true);
+            if (-1 < p)
+                return product.witness(p);
+            else
+                return null;
+        }
+    }
+    /**
+     * Neither argument is modified.
+     * @return Shortest string accepted by both automata, or null
+     * when the intersection is empty
+     */
+    public static String IntersectionExample(Automaton a1, Automaton a2) {
+        if (a1.isSingleton()) {
+            if (a2.run(a1.singleton))
+                return a1.singleton;
+            else
+                return null;
+        }
+        else if (a2.isSingleton()) {
+            if (a1.run(a2.singleton))
+                return a2.singleton;
+            else
+                return null;
+        }
+        else {
+            Product product = new Product(a1, a2, Product.INTERSECTION, false);
+            int p = product.explore(true);
+            if (-1 < p)
+                return product.witness(p);
+            else
+                return null;
         }
     }
+    /**
+     * Neither argument is modified.
+     * @return Shortest string accepted by exactly one of the
+     * automata, or null when their languages are equal
+     */
+    public static String EquivalenceCounterexample(Automaton a1, Automaton a2) {
+        if (a1 == a2)
+            return null;
+        else if (a1.isSingleton() && a2.isSingleton()) {
+            if (a1.singleton.equals(a2.singleton))
+                return null;
+            else if (a1.singleton.length() <= a2.singleton.length())
+                return a1.singleton;
+            else
+                return a2.singleton;
+        }
+        else {
+            Product product = new Product(Deterministic(a1), Deterministic(a2), Product.SYMMETRIC, false);
+            int p = product.explore(true);
+            if (-1 < p)
+                return product.witness(p);
+            else
+                return null;
+        }
+    }
+    /**
+     * @return The argument when it is expanded and deterministic,
+     * otherwise a deterministic copy
+     */
+    private static Automaton Deterministic(Automaton a) {
+        if (a.isSingleton())
+            return a.cloneExpanded();
+        else if (a.deterministic)
+            return a;
+        else {
+            a = a.clone();
+            a.determinize();
+            return a;
+        }
+    }
+    /**
+     * @return The argument when it is expanded, otherwise an
+     * expanded copy
+     */
+    private static Automaton Expanded(Automaton a) {
+        if (a.isSingleton())
+            return a.cloneExpanded();
+        else
+            return a;
+    }
     public static Automaton Union(Automaton a1, Automaton a2) {
         if ((a1.isSingleton() && a2.isSingleton() && a1.singleton.equals(a2.singleton)) || a1 == a2)
             return a1.cloneIfRequired();
@@ -373,61 +579,69 @@ public final class BasicOperations {
         return a;
     }
     public static void Determinize(Automaton a) {
+
+        Determinize(a, GetExecutor());
+    }
+    /**
+     * @param executor Parallel subset construction, or null for
+     * construction on the calling thread
+     */
+    public static void Determinize(Automaton a, ExecutorService executor) {
         if (a.deterministic || a.isSingleton())
             return;
         else {
             Set<State> initialset = new Set<State>();
             initialset.add(a.initial);
-            Determinize(a, initialset);
+            Determinize(a, initialset, executor);
         }
     }
+    /**
+     * Subset construction by {@link #Determinize(Packed,int[])}.
+     */
     protected static void Determinize(Automaton a, Set<State> initialset) {
-        char[] points = a.getStartPoints();
-        final int tablesize = (12*points.length);
+
+        Determinize(a, initialset, GetExecutor());
+    }
+    /**
+     * Subset construction by {@link
+     * #Determinize(Packed,int[],ExecutorService)}.
+     */
+    protected static void Determinize(Automaton a, Set<State> initialset, ExecutorService executor) {
         /*
-         * Subset construction
+         * Number the states reachable from the initial set, which
+         * need not be reachable from the initial state (as after
+         * reverse), so state numbers from the snapshot don't apply
          */
-        Map<Set<State>, Set<State>> sets = new Map<Set<State>, Set<State>>(tablesize);
-        List<Set<State>> worklist = new ArrayList<Set<State>>();
-        Map<Set<State>, State> newstate = new Map<Set<State>, State>(tablesize);
-        sets.put(initialset, initialset);
-        worklist.add(initialset);
-        a.initial = new State();
-        newstate.put(initialset, a.initial);
-        while (worklist.isNotEmpty()) {
-            Set<State> s = worklist.removeFirst();
-            State r = newstate.get(s);
-            for (State q : s){
-                if (q.accept) {
-                    r.accept = true;
-                    break;
-                }
-            }
-            for (int n = 0; n < points.length; n++) {
-                Set<State> p = new Set<State>();
-                for (State q : s){
-                    for (Transition t : q){
-                        if (t.min <= points[n] && points[n] <= t.max)
-                            p.add(t.to);
-                    }
-                }
-                if (!sets.containsKey(p)) {
-                    sets.put(p, p);
-                    worklist.add(p);
-                    newstate.put(p, new State());
+        java.util.IdentityHashMap<State,Integer> numbers = new java.util.IdentityHashMap<State,Integer>();
+        State[] states = new State[Math.max(0x10,initialset.size())];
+        Packed.Builder b = new Packed.Builder(states.length,(2*states.length));
+        int count = 0;
+        int[] initial = new int[initialset.size()];
+        for (State s : initialset){
+            numbers.put(s,count);
+            initial[count] = count;
+            states[count++] = s;
+            b.addState(s.accept);
+        }
+        for (int head = 0; head < count; head++){
+            State s = states[head];
+            for (Transition t : s){
+                Integer to = numbers.get(t.to);
+                if (null == to){
+                    to = count;
+                    numbers.put(t.to,to);
+                    if (count == states.length)
+                        states = Arrays.copyOf(states,(2*count));
+                    states[count++] = t.to;
+                    b.addState(t.to.accept);
                 }
-                State q = newstate.get(p);
-                char min = points[n];
-                char max;
-                if (n + 1 < points.length)
-                    max = (char)(points[n + 1] - 1);
-                else
-                    max = Character.MAX_VALUE;
-                r.add(new Transition(min, max, q));
+                b.addTransition(head,t.min,t.max,to);
             }
         }
+        Packed p = b.build(0,false);
+        a.initial = Determinize(p, initial, executor).toAutomaton().initial;
         a.deterministic = true;
-        a.removeDeadTransitions();
+        a.clearHashCode();
     }
     public static void AddEpsilons(Automaton a, Collection<StatePair> pairs) {
         a.expandSingleton();
@@ -524,12 +738,11 @@ public final class BasicOperations {
             return p.accept;
         }
         else {
-            Set<State> states = a.getStates();
-            Automaton.SetStateNumbers(states);
+            State[] states = a.getStateArray();
             List<State> pp = new ArrayList<State>();
             List<State> pp_other = new ArrayList<State>();
-            BitSet bb = new BitSet(states.size());
-            BitSet bb_other = new BitSet(states.size());
+            BitSet bb = new BitSet(states.length);
+            BitSet bb_other = new BitSet(states.length);
             pp.add(a.initial);
             ArrayList<State> dest = new ArrayList<State>();
             boolean accept = a.initial.accept;
@@ -560,4 +773,727 @@ public final class BasicOperations {
             return accept;
         }
     }
+
+    public static Packed Concatenate(Packed a1, Packed a2) {
+        Packed.Builder b = new Packed.Builder((a1.size + a2.size),(a1.getNumberOfTransitions() + a2.getNumberOfTransitions()));
+        b.addAll(a1);
+        final int shift = b.addAll(a2);
+        final boolean accept = a2.accept.get(a2.initial);
+        for (int s = a1.accept.nextSetBit(0); -1 < s; s = a1.accept.nextSetBit(s+1)){
+            b.setAccept(s,accept);
+            b.addTransitions(s,a2,a2.initial,shift);
+        }
+        return b.build(a1.initial,false);
+    }
+    public static Packed Concatenate(Packed[] list) {
+        if (0 == list.length)
+            return Packed.From(BasicAutomata.MakeEmptyString());
+        else {
+            Packed a = list[0];
+            for (int n = 1; n < list.length; n++){
+                a = Concatenate(a,list[n]);
+            }
+            return a;
+        }
+    }
+    public static Packed Optional(Packed a) {
+        Packed.Builder b = new Packed.Builder((a.size + 1),(2 * a.getNumberOfTransitions()));
+        b.addAll(a);
+        final int s = b.addState(true);
+        b.addTransitions(s,a,a.initial,0);
+        return b.build(s,false);
+    }
+    public static Packed Repeat(Packed a) {
+        Packed.Builder b = new Packed.Builder((a.size + 1),(2 * a.getNumberOfTransitions()));
+        b.addAll(a);
+        final int s = b.addState(true);
+        b.addTransitions(s,a,a.initial,0);
+        for (int p = a.accept.nextSetBit(0); -1 < p; p = a.accept.nextSetBit(p+1)){
+            b.addTransitions(p,a,a.initial,0);
+        }
+        return b.build(s,false);
+    }
+    public static Packed Union(Packed a1, Packed a2) {
+        return Union(new Packed[]{a1, a2});
+    }
+    public static Packed Union(Packed[] list) {
+        int states = 1, transitions = 0;
+        for (Packed a : list){
+            states += a.size;
+            transitions += (a.getNumberOfTransitions() + (a.offset[a.initial+1] - a.offset[a.initial]));
+        }
+        Packed.Builder b = new Packed.Builder(states,transitions);
+        int[] shift = new int[list.length];
+        for (int n = 0; n < list.length; n++){
+            shift[n] = b.addAll(list[n]);
+        }
+        final int s = b.addState(false);
+        for (int n = 0; n < list.length; n++){
+            Packed a = list[n];
+            b.addTransitions(s,a,a.initial,shift[n]);
+            if (a.accept.get(a.initial))
+                b.setAccept(s,true);
+        }
+        return b.build(s,false);
+    }
+    /**
+     * Subset construction.
+     */
+    public static Packed Determinize(Packed a) {
+
+        return Determinize(a, GetExecutor());
+    }
+    /**
+     * @param executor Parallel subset construction, or null for
+     * construction on the calling thread
+     */
+    public static Packed Determinize(Packed a, ExecutorService executor) {
+        if (a.deterministic)
+            return a;
+        else
+            return Determinize(a, new int[]{a.initial}, executor);
+    }
+    /**
+     * @param initialset Sorted initial states
+     */
+    protected static Packed Determinize(Packed a, int[] initialset) {
+
+        return Determinize(a, initialset, GetExecutor());
+    }
+    /**
+     * Subset construction over sorted arrays of state numbers, hash
+     * consed in {@link Subsets}.  The successors of a subset are
+     * found by a {@link Sweep} of the transitions of its members in
+     * order of interval start.  Members from which no accept state
+     * is reachable are dropped from each subset as it is
+     * constructed, so the result has no dead states.
+     * 
+     * With an executor, and at least {@link #ParallelThreshold}
+     * states, subsets are expanded a breadth first level at a time.
+     * The subsets of a level are swept in parallel, each looking up
+     * its successors in the table of the previous levels, and then
+     * the successors are numbered on the calling thread in the order
+     * of the sequential construction.  The result is identical in
+     * either case.
+     * 
+     * @param initialset Sorted initial states
+     * @param executor Parallel subset construction, or null for
+     * construction on the calling thread
+     */
+    protected static Packed Determinize(Packed a, int[] initialset, ExecutorService executor) {
+        final BitSet live = LiveStates(a);
+        Packed.Builder b = new Packed.Builder(a.size,(a.size * 2));
+        Subsets subsets = new Subsets();
+        {
+            int[] initial = new int[initialset.length];
+            int len = 0;
+            boolean accept = false;
+            for (int q : initialset){
+                if (live.get(q)){
+                    initial[len++] = q;
+                    if (a.accept.get(q))
+                        accept = true;
+                }
+            }
+            subsets.intern(initial,0,len);
+            b.addState(accept);
+        }
+        final Sweep sweep = new Sweep(a,live);
+
+        if (null == executor || Sequential == executor || a.size < ParallelThreshold){
+
+            for (int d = 0; d < subsets.count; d++){
+
+                Successors(b,subsets,sweep,d);
+            }
+        }
+        else {
+            final int tasks = (4 * Runtime.getRuntime().availableProcessors());
+            Expand[] expand = new Expand[tasks];
+            java.util.List<Expand> list = new java.util.ArrayList<Expand>(tasks);
+
+            for (int lo = 0, hi; lo < subsets.count; lo = hi){
+                hi = subsets.count;
+                final int chunk = Math.max(Expand.Chunk,((hi - lo + tasks - 1) / tasks));
+                if ((hi - lo) <= chunk){
+                    /*
+                     * Narrow level
+                     */
+                    for (int d = lo; d < hi; d++){
+
+                        Successors(b,subsets,sweep,d);
+                    }
+                }
+                else {
+                    list.clear();
+                    for (int from = lo, n = 0; from < hi; from += chunk, n++){
+                        Expand e = expand[n];
+                        if (null == e)
+                            expand[n] = e = new Expand(a,live,subsets);
+                        list.add(e.range(from,Math.min(hi,(from + chunk))));
+                    }
+                    Invoke(executor,list);
+                    /*
+                     * Number the successors of the level in the order
+                     * of the sequential construction
+                     */
+                    for (Expand e : list){
+                        e.merge(b,subsets);
+                    }
+                }
+            }
+        }
+        return b.build(0,true);
+    }
+    /**
+     * Sequential subset construction step: sweep subset
+     * <code>d</code>, and intern and add its successors.
+     */
+    private static void Successors(Packed.Builder b, Subsets subsets, Sweep sweep, int d){
+        final int count = sweep.sweep(subsets,d);
+        final int[] offset = sweep.offset;
+        for (int i = 0; i < count; i++){
+            final int size = subsets.count;
+            final int q = subsets.intern(sweep.members,offset[i],(offset[i+1] - offset[i]));
+            if (size < subsets.count)
+                b.addState(sweep.accept[i]);
+            b.addTransition(d,sweep.min[i],sweep.max[i],q);
+        }
+    }
+    /**
+     * Run the tasks to completion, rethrowing the failure of any
+     */
+    protected static <T> void Invoke(ExecutorService executor, java.util.List<? extends Callable<T>> list){
+        try {
+            for (Future<T> f : executor.invokeAll(list)){
+                f.get();
+            }
+        }
+        catch (InterruptedException exc){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted parallel operation",exc);
+        }
+        catch (ExecutionException exc){
+            Throwable t = exc.getCause();
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            else if (t instanceof Error)
+                throw (Error)t;
+            else
+                throw new IllegalStateException(t);
+        }
+    }
+    /**
+     * @return Automaton having only states that are reachable from
+     * the initial state and from which an accept state is
+     * reachable, besides the initial state
+     */
+    public static Packed RemoveDeadTransitions(Packed a) {
+        final int size = a.size;
+        int[] queue = new int[size];
+        BitSet reachable = new BitSet(size);
+        {
+            int head = 0, tail = 0;
+            queue[tail++] = a.initial;
+            reachable.set(a.initial);
+            while (head < tail){
+                final int s = queue[head++];
+                for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                    final int q = a.to[t];
+                    if (!reachable.get(q)){
+                        reachable.set(q);
+                        queue[tail++] = q;
+                    }
+                }
+            }
+        }
+        BitSet live = LiveStates(a);
+        live.and(reachable);
+        if (live.cardinality() == size)
+            return a;
+        else {
+            BitSet keep = (BitSet)live.clone();
+            keep.set(a.initial);
+            int[] number = queue;
+            Packed.Builder b = new Packed.Builder(keep.cardinality(),a.getNumberOfTransitions());
+            for (int s = keep.nextSetBit(0); -1 < s; s = keep.nextSetBit(s+1)){
+                number[s] = b.addState(a.accept.get(s));
+            }
+            for (int s = live.nextSetBit(0); -1 < s; s = live.nextSetBit(s+1)){
+                for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                    final int q = a.to[t];
+                    if (live.get(q))
+                        b.addTransition(number[s],a.min[t],a.max[t],number[q]);
+                }
+            }
+            return b.build(number[a.initial],a.deterministic);
+        }
+    }
+    /**
+     * @return States from which an accept state is reachable
+     */
+    protected static BitSet LiveStates(Packed a) {
+        final int[][] incoming = a.incoming();
+        final int[] ioffset = incoming[0], isource = incoming[1];
+        int[] queue = new int[a.size];
+        BitSet live = new BitSet(a.size);
+        int head = 0, tail = 0;
+        for (int s = a.accept.nextSetBit(0); -1 < s; s = a.accept.nextSetBit(s+1)){
+            live.set(s);
+            queue[tail++] = s;
+        }
+        while (head < tail){
+            final int s = queue[head++];
+            for (int t = ioffset[s], z = ioffset[s+1]; t < z; t++){
+                final int q = isource[t];
+                if (!live.get(q)){
+                    live.set(q);
+                    queue[tail++] = q;
+                }
+            }
+        }
+        return live;
+    }
+    public static boolean IsEmpty(Packed a) {
+        return (a.accept.isEmpty() || RemoveDeadTransitions(a).accept.isEmpty());
+    }
+    public static boolean Run(Packed a, CharSequence s) {
+        final int len = s.length();
+        if (a.deterministic) {
+            int p = a.initial;
+            for (int i = 0; i < len; i++) {
+                p = a.step(p, s.charAt(i));
+                if (p == -1)
+                    return false;
+            }
+            return a.accept.get(p);
+        }
+        else {
+            int[] pp = new int[a.size];
+            int[] pp_other = new int[a.size];
+            BitSet bb_other = new BitSet(a.size);
+            int count = 1;
+            pp[0] = a.initial;
+            boolean accept = a.accept.get(a.initial);
+            for (int i = 0; i < len; i++) {
+                final char c = s.charAt(i);
+                accept = false;
+                bb_other.clear();
+                int count_other = 0;
+                for (int n = 0; n < count; n++) {
+                    final int p = pp[n];
+                    for (int t = a.offset[p], z = a.offset[p+1]; t < z; t++){
+                        if (a.min[t] <= c && c <= a.max[t]){
+                            final int q = a.to[t];
+                            if (!bb_other.get(q)) {
+                                bb_other.set(q);
+                                pp_other[count_other++] = q;
+                                if (a.accept.get(q))
+                                    accept = true;
+                            }
+                        }
+                    }
+                }
+                int[] tp = pp;
+                pp = pp_other;
+                pp_other = tp;
+                count = count_other;
+                if (0 == count)
+                    return false;
+            }
+            return accept;
+        }
+    }
+
+    /**
+     * @see #Sequential
+     */
+    private final static class Inline
+        extends java.util.concurrent.AbstractExecutorService
+    {
+        Inline(){
+            super();
+        }
+
+        public void execute(Runnable task){
+            task.run();
+        }
+        public void shutdown(){
+        }
+        public java.util.List<Runnable> shutdownNow(){
+            return new java.util.ArrayList<Runnable>(0);
+        }
+        public boolean isShutdown(){
+            return false;
+        }
+        public boolean isTerminated(){
+            return false;
+        }
+        public boolean awaitTermination(long timeout, java.util.concurrent.TimeUnit unit){
+            return false;
+        }
+    }
+    /**
+     * Sweep of the transitions of the members of a subset in order
+     * of interval start, finding the successor subset of each
+     * interval.  A sweep reads the automaton and the table of
+     * subsets, and writes only its own buffers, so that each thread
+     * of a parallel construction may have one.
+     */
+    final static class Sweep
+        extends Object
+    {
+        final Packed a;
+        final BitSet live;
+
+        private long[] starts = new long[0x10];
+        private int[] points = new int[0x20];
+        private int[] active = new int[0x10];
+        /*
+         * Successor n is the interval (min[n], max[n]) to the sorted
+         * subset in members from offset[n] (inclusive) to
+         * offset[n+1] (exclusive)
+         */
+        int[] min = new int[0x10];
+        int[] max = new int[0x10];
+        boolean[] accept = new boolean[0x10];
+        int[] offset = new int[0x11];
+        int[] members = new int[0x40];
+
+
+        Sweep(Packed a, BitSet live){
+            super();
+            this.a = a;
+            this.live = live;
+        }
+
+
+        /**
+         * @return Number of successors of subset <code>d</code>
+         */
+        int sweep(Subsets subsets, int d){
+            final Packed a = this.a;
+            final BitSet live = this.live;
+            final int[] amin = a.min, amax = a.max, ato = a.to;
+            final int[] subset = subsets.members;
+            final int mz = subsets.offset[d+1];
+            /*
+             * Collect the live transitions of the members, keyed by
+             * interval start
+             */
+            int count = 0;
+            for (int m = subsets.offset[d]; m < mz; m++){
+                final int q = subset[m];
+                count += (a.offset[q+1] - a.offset[q]);
+            }
+            if (count > this.starts.length){
+                this.starts = new long[count];
+                this.points = new int[2*count];
+                this.active = new int[count];
+            }
+            final long[] starts = this.starts;
+            final int[] points = this.points, active = this.active;
+            count = 0;
+            int npoints = 0;
+            for (int m = subsets.offset[d]; m < mz; m++){
+                final int q = subset[m];
+                for (int t = a.offset[q], z = a.offset[q+1]; t < z; t++){
+                    if (live.get(ato[t])){
+                        starts[count++] = ((((long)amin[t]) << 32)|t);
+                        points[npoints++] = amin[t];
+                        points[npoints++] = (amax[t] + 1);
+                    }
+                }
+            }
+            if (0 == count)
+                return 0;
+
+            java.util.Arrays.sort(starts,0,count);
+            java.util.Arrays.sort(points,0,npoints);
+            /*
+             * Sweep the distinct interval boundaries, maintaining the
+             * set of transitions covering the current interval
+             */
+            int successors = 0, nactive = 0, next = 0;
+            for (int n = 0; n < npoints; n++){
+                final int point = points[n];
+                if (0 < n && point == points[n-1])
+                    continue;
+                else {
+                    int w = 0;
+                    for (int i = 0; i < nactive; i++){
+                        if (amax[active[i]] >= point)
+                            active[w++] = active[i];
+                    }
+                    nactive = w;
+                    while (next < count && ((int)(starts[next] >>> 32)) == point){
+                        active[nactive++] = (int)starts[next++];
+                    }
+                    if (0 < nactive){
+                        if (successors == this.min.length){
+                            final int z = (2*successors);
+                            this.min = Arrays.copyOf(this.min,z);
+                            this.max = Arrays.copyOf(this.max,z);
+                            this.accept = Arrays.copyOf(this.accept,z);
+                            this.offset = Arrays.copyOf(this.offset,z+1);
+                        }
+                        final int start = this.offset[successors];
+                        if (start+nactive > this.members.length)
+                            this.members = Arrays.copyOf(this.members,Math.max((2*this.members.length),(start+nactive)));
+                        final int[] target = this.members;
+                        for (int i = 0; i < nactive; i++){
+                            target[start+i] = ato[active[i]];
+                        }
+                        java.util.Arrays.sort(target,start,(start+nactive));
+                        int len = 1;
+                        boolean accept = a.accept.get(target[start]);
+                        for (int i = 1; i < nactive; i++){
+                            if (target[start+i] != target[start+len-1]){
+                                target[start+len++] = target[start+i];
+                                if (a.accept.get(target[start+i]))
+                                    accept = true;
+                            }
+                        }
+                        /*
+                         * The next distinct boundary is the end of
+                         * the interval
+                         */
+                        int end = n+1;
+                        while (points[end] == point)
+                            end += 1;
+                        this.min[successors] = point;
+                        this.max[successors] = (points[end]-1);
+                        this.accept[successors] = accept;
+                        this.offset[successors+1] = (start+len);
+                        successors += 1;
+                    }
+                }
+            }
+            return successors;
+        }
+    }
+    /**
+     * Parallel expansion of a range of the subsets of a level.  The
+     * successors of each subset are recorded with the number of a
+     * subset found in the table, or with a new subset for {@link
+     * #merge(Packed.Builder,Subsets)}.
+     */
+    final static class Expand
+        extends Object
+        implements Callable<Expand>
+    {
+        /**
+         * Least number of subsets of a task
+         */
+        final static int Chunk = 0x40;
+
+
+        final Subsets subsets;
+
+        final Sweep sweep;
+
+        private int from, to;
+        /*
+         * Number of successors by subset from (from)
+         */
+        private int[] count = new int[Chunk];
+        /*
+         * Successor interval and subset number, or the complement
+         * of the index of a new subset
+         */
+        private int[] min = new int[0x100];
+        private int[] max = new int[0x100];
+        private int[] number = new int[0x100];
+        private int successors;
+        /*
+         * New subset n has members from offset[n] (inclusive) to
+         * offset[n+1] (exclusive)
+         */
+        private int[] offset = new int[0x41];
+        private int[] members = new int[0x100];
+        private boolean[] accept = new boolean[0x40];
+        private int created;
+
+
+        Expand(Packed a, BitSet live, Subsets subsets){
+            super();
+            this.subsets = subsets;
+            this.sweep = new Sweep(a,live);
+        }
+
+
+        Expand range(int from, int to){
+            this.from = from;
+            this.to = to;
+            if ((to - from) > this.count.length)
+                this.count = new int[to - from];
+            this.successors = 0;
+            this.created = 0;
+            return this;
+        }
+        public Expand call(){
+            final Subsets subsets = this.subsets;
+            final Sweep sweep = this.sweep;
+            for (int d = this.from; d < this.to; d++){
+                final int count = sweep.sweep(subsets,d);
+                this.count[d - this.from] = count;
+                if (this.successors+count > this.number.length){
+                    final int z = Math.max((2*this.number.length),(this.successors+count));
+                    this.min = Arrays.copyOf(this.min,z);
+                    this.max = Arrays.copyOf(this.max,z);
+                    this.number = Arrays.copyOf(this.number,z);
+                }
+                final int[] offset = sweep.offset;
+                for (int i = 0; i < count; i++){
+                    final int len = (offset[i+1] - offset[i]);
+                    int q = subsets.find(sweep.members,offset[i],len);
+                    if (-1 == q){
+                        final int c = this.created++;
+                        if (c == this.accept.length){
+                            this.accept = Arrays.copyOf(this.accept,(2*c));
+                            this.offset = Arrays.copyOf(this.offset,(2*c)+1);
+                        }
+                        final int start = this.offset[c];
+                        if (start+len > this.members.length)
+                            this.members = Arrays.copyOf(this.members,Math.max((2*this.members.length),(start+len)));
+                        System.arraycopy(sweep.members,offset[i],this.members,start,len);
+                        this.offset[c+1] = (start+len);
+                        this.accept[c] = sweep.accept[i];
+                        q = ~c;
+                    }
+                    final int n = this.successors++;
+                    this.min[n] = sweep.min[i];
+                    this.max[n] = sweep.max[i];
+                    this.number[n] = q;
+                }
+            }
+            return this;
+        }
+        /**
+         * Intern the new subsets and add the transitions of the
+         * range, on the constructing thread.
+         */
+        void merge(Packed.Builder b, Subsets subsets){
+            for (int d = this.from, n = 0; d < this.to; d++){
+                for (int i = 0, count = this.count[d - this.from]; i < count; i++, n++){
+                    int q = this.number[n];
+                    if (0 > q){
+                        final int c = ~q;
+                        final int size = subsets.count;
+                        q = subsets.intern(this.members,this.offset[c],(this.offset[c+1] - this.offset[c]));
+                        if (size < subsets.count)
+                            b.addState(this.accept[c]);
+                    }
+                    b.addTransition(d,this.min[n],this.max[n],q);
+                }
+            }
+        }
+    }
+    /**
+     * Open addressing hash table of sorted state number subsets,
+     * numbered in order of addition.  The members of subset
+     * <i>d</i> are found from index <code>offset[d]</code>
+     * (inclusive) to <code>offset[d+1]</code> (exclusive) in
+     * <code>members</code>.
+     */
+    final static class Subsets
+        extends Object
+    {
+        int count;
+        int[] offset = new int[0x11];
+        int[] members = new int[0x40];
+        int[] hash = new int[0x10];
+        /*
+         * Subset number plus one, or zero for an empty slot
+         */
+        int[] table = new int[0x20];
+
+
+        Subsets(){
+            super();
+        }
+
+
+        /**
+         * Read only, so that threads may share a table that is not
+         * being modified.
+         * @param set Sorted state numbers, from index
+         * <code>from</code> (inclusive) count <code>len</code>
+         * @return Number of the existing subset, or negative one
+         */
+        int find(int[] set, int from, int len){
+            final int h = Hash(set,from,len);
+            final int mask = (this.table.length-1);
+            for (int slot = (h & mask), d; 0 != (d = this.table[slot]); slot = ((slot+1) & mask)){
+                d -= 1;
+                if (h == this.hash[d] && this.equals(d,set,from,len))
+                    return d;
+            }
+            return -1;
+        }
+        /**
+         * @param set Sorted state numbers, from index
+         * <code>from</code> (inclusive) count <code>len</code>
+         * @return Number of the existing or new subset
+         */
+        int intern(int[] set, int from, int len){
+            final int h = Hash(set,from,len);
+            final int mask = (this.table.length-1);
+            int slot = (h & mask);
+            for (int d; 0 != (d = this.table[slot]); slot = ((slot+1) & mask)){
+                d -= 1;
+                if (h == this.hash[d] && this.equals(d,set,from,len))
+                    return d;
+            }
+            final int d = this.count++;
+            if (this.count == this.hash.length){
+                this.hash = java.util.Arrays.copyOf(this.hash,(2*this.count));
+                this.offset = java.util.Arrays.copyOf(this.offset,(2*this.count)+1);
+            }
+            this.hash[d] = h;
+            final int start = this.offset[d];
+            if (start+len > this.members.length)
+                this.members = java.util.Arrays.copyOf(this.members,Math.max((2*this.members.length),(start+len)));
+            System.arraycopy(set,from,this.members,start,len);
+            this.offset[d+1] = (start+len);
+            this.table[slot] = (d+1);
+            if ((2*this.count) > this.table.length)
+                this.rehash();
+            return d;
+        }
+        private boolean equals(int d, int[] set, int from, int len){
+            final int start = this.offset[d];
+            if (len != (this.offset[d+1]-start))
+                return false;
+            else {
+                for (int i = 0; i < len; i++){
+                    if (set[from+i] != this.members[start+i])
+                        return false;
+                }
+                return true;
+            }
+        }
+        private void rehash(){
+            final int[] table = new int[2*this.table.length];
+            final int mask = (table.length-1);
+            for (int d = 0; d < this.count; d++){
+                int slot = (this.hash[d] & mask);
+                while (0 != table[slot])
+                    slot = ((slot+1) & mask);
+                table[slot] = (d+1);
+            }
+            this.table = table;
+        }
+
+        static int Hash(int[] set, int from, int len){
+            int h = len;
+            for (int i = from, z = (from+len); i < z; i++){
+                h = (31*h) + set[i];
+            }
+            h ^= (h >>> 16);
+            h *= 0x85ebca6b;
+            h ^= (h >>> 13);
+            return h;
+        }
+    }
 }
@@ -0,0 +1,595 @@
+/*
+ * automaton
+ * 
+ * Copyright (c) 2001-2011 Anders Moeller
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of characters as sorted, disjoint and non adjacent
+ * inclusive (min, max) ranges in a primitive array, with the set
+ * algebra of character classes, and the partition of the alphabet
+ * into the intervals of transition start points.
+ * 
+ * @see Partition
+ * @author John Pritchard
+ */
+public final class CharRangeSet
+    extends Object
+    implements Comparable<CharRangeSet>
+{
+
+    public final static CharRangeSet EMPTY = new CharRangeSet(new int[0]);
+
+    public final static CharRangeSet ANY = new CharRangeSet(new int[]{Character.MIN_VALUE, Character.MAX_VALUE});
+
+
+    public static CharRangeSet Of(char c){
+        return new CharRangeSet(new int[]{c, c});
+    }
+    public static CharRangeSet Of(char min, char max){
+        if (min <= max)
+            return new CharRangeSet(new int[]{min, max});
+        else
+            return EMPTY;
+    }
+    /**
+     * @param chars Characters in any order
+     */
+    public static CharRangeSet Of(CharSequence chars){
+        final int len = chars.length();
+        int[] pairs = new int[2*len];
+        for (int n = 0, z = 0; n < len; n++){
+            final char c = chars.charAt(n);
+            pairs[z++] = c;
+            pairs[z++] = c;
+        }
+        return Of(pairs, pairs.length);
+    }
+    /**
+     * @param pairs Ranges (min, max) in any order, overlapping or
+     * not, where a range having min greater than max is empty
+     * @param len Length of pairs
+     */
+    public static CharRangeSet Of(char[] pairs, int len){
+        final int count = (len>>1);
+        long[] sort = new long[count];
+        int z = 0;
+        for (int n = 0; n < count; n++){
+            final char min = pairs[2*n], max = pairs[(2*n)+1];
+            if (min <= max)
+                sort[z++] = (((long)min)<<16)|max;
+        }
+        return Of(sort, z);
+    }
+    /**
+     * @param pairs Ranges (min, max) in any order, overlapping or
+     * not, where a range having min greater than max is empty
+     * @param len Length of pairs
+     */
+    public static CharRangeSet Of(int[] pairs, int len){
+        final int count = (len>>1);
+        long[] sort = new long[count];
+        int z = 0;
+        for (int n = 0; n < count; n++){
+            final int min = pairs[2*n], max = pairs[(2*n)+1];
+            if (min <= max)
+                sort[z++] = (((long)min)<<16)|max;
+        }
+        return Of(sort, z);
+    }
+    /**
+     * @param sort Packed (min, max) keys, sorted in place
+     */
+    private static CharRangeSet Of(long[] sort, int count){
+        if (0 == count)
+            return EMPTY;
+        else {
+            Arrays.sort(sort, 0, count);
+            int[] ranges = new int[2*count];
+            int z = 0;
+            for (int n = 0; n < count; n++){
+                final int min = (int)(sort[n]>>>16), max = (int)(sort[n] & 0xffff);
+                if (0 < z && min <= (ranges[z-1]+1)){
+                    if (max > ranges[z-1])
+                        ranges[z-1] = max;
+                }
+                else {
+                    ranges[z++] = min;
+                    ranges[z++] = max;
+                }
+            }
+            return new CharRangeSet((z < ranges.length)?(Arrays.copyOf(ranges,z)):(ranges));
+        }
+    }
+    /**
+     * @return Sorted union of sorted points, each beginning with
+     * <code>Character.MIN_VALUE</code>
+     */
+    public static char[] Points(char[] a, char[] b){
+        if (a == b || 1 == b.length)
+            return a;
+        else if (1 == a.length)
+            return b;
+        else {
+            char[] re = new char[a.length+b.length];
+            int z = 0;
+            for (int i = 0, j = 0; i < a.length || j < b.length; ){
+                char c;
+                if (j == b.length || (i < a.length && a[i] <= b[j]))
+                    c = a[i++];
+                else
+                    c = b[j++];
+                if (0 == z || re[z-1] != c)
+                    re[z++] = c;
+            }
+            return (z < re.length)?(Arrays.copyOf(re,z)):(re);
+        }
+    }
+    /**
+     * @param type General category from <code>Character.getType</code>
+     * @return Canonical set of the category, or null for an unknown
+     * type
+     */
+    public static CharRangeSet Category(int type){
+        if (-1 < type && type < Categories.Type.length)
+            return Categories.Type[type];
+        else
+            return null;
+    }
+    /**
+     * @param name General category as "Lu", or major class as "L"
+     * @return Canonical set of the category, or null for an unknown
+     * name
+     * @see #CategoryNames()
+     */
+    public static CharRangeSet Category(String name){
+        final String[] names = Categories.Names;
+        for (int n = 0; n < names.length; n++){
+            if (names[n].equals(name))
+                return Categories.Sets[n];
+        }
+        return null;
+    }
+    /**
+     * @return General category and major class names
+     */
+    public static String[] CategoryNames(){
+        return Categories.Names.clone();
+    }
+
+
+    /**
+     * Sorted, disjoint and non adjacent (min, max) pairs
+     */
+    private final int[] ranges;
+
+    private int hash;
+
+
+    private CharRangeSet(int[] ranges){
+        super();
+        this.ranges = ranges;
+    }
+
+
+    public boolean isEmpty(){
+        return (0 == this.ranges.length);
+    }
+    /**
+     * @return Number of ranges
+     */
+    public int size(){
+        return (this.ranges.length>>1);
+    }
+    /**
+     * @param n Range index
+     */
+    public char getMin(int n){
+        return (char)this.ranges[2*n];
+    }
+    /**
+     * @param n Range index
+     */
+    public char getMax(int n){
+        return (char)this.ranges[(2*n)+1];
+    }
+    /**
+     * @return Number of characters
+     */
+    public int cardinality(){
+        final int[] ranges = this.ranges;
+        int count = 0;
+        for (int n = 0; n < ranges.length; n += 2)
+            count += (ranges[n+1]-ranges[n]+1);
+        return count;
+    }
+    /**
+     * @return Index of the range containing the character, or
+     * negative one
+     */
+    public int indexOf(char c){
+        final int[] ranges = this.ranges;
+        int a = 0, b = (ranges.length>>1)-1;
+        while (a <= b){
+            final int m = ((a+b)>>>1);
+            if (c < ranges[2*m])
+                b = m-1;
+            else if (c > ranges[(2*m)+1])
+                a = m+1;
+            else
+                return m;
+        }
+        return -1;
+    }
+    public boolean contains(char c){
+        return (-1 < this.indexOf(c));
+    }
+    /**
+     * @return All of the characters from min to max are members
+     */
+    public boolean contains(char min, char max){
+        final int n = this.indexOf(min);
+        return (-1 < n && max <= this.ranges[(2*n)+1]);
+    }
+    public CharRangeSet union(CharRangeSet that){
+        final int[] a = this.ranges, b = that.ranges;
+        if (0 == b.length || a == b)
+            return this;
+        else if (0 == a.length)
+            return that;
+        else {
+            int[] re = new int[a.length+b.length];
+            int z = 0;
+            for (int i = 0, j = 0; i < a.length || j < b.length; ){
+                int min, max;
+                if (j == b.length || (i < a.length && a[i] <= b[j])){
+                    min = a[i];
+                    max = a[i+1];
+                    i += 2;
+                }
+                else {
+                    min = b[j];
+                    max = b[j+1];
+                    j += 2;
+                }
+                if (0 < z && min <= (re[z-1]+1)){
+                    if (max > re[z-1])
+                        re[z-1] = max;
+                }
+                else {
+                    re[z++] = min;
+                    re[z++] = max;
+                }
+            }
+            return new CharRangeSet((z < re.length)?(Arrays.copyOf(re,z)):(re));
+        }
+    }
+    public CharRangeSet intersection(CharRangeSet that){
+        final int[] a = this.ranges, b = that.ranges;
+        if (a == b)
+            return this;
+        else if (0 == a.length || 0 == b.length)
+            return EMPTY;
+        else {
+            int[] re = new int[a.length+b.length];
+            int z = 0;
+            for (int i = 0, j = 0; i < a.length && j < b.length; ){
+                final int min = (a[i] > b[j])?(a[i]):(b[j]);
+                final int max = (a[i+1] < b[j+1])?(a[i+1]):(b[j+1]);
+                if (min <= max){
+                    re[z++] = min;
+                    re[z++] = max;
+                }
+                if (a[i+1] < b[j+1])
+                    i += 2;
+                else
+                    j += 2;
+            }
+            if (0 == z)
+                return EMPTY;
+            else
+                return new CharRangeSet((z < re.length)?(Arrays.copyOf(re,z)):(re));
+        }
+    }
+    public CharRangeSet complement(){
+        final int[] ranges = this.ranges;
+        if (0 == ranges.length)
+            return ANY;
+        else {
+            int[] re = new int[ranges.length+2];
+            int z = 0, next = Character.MIN_VALUE;
+            for (int n = 0; n < ranges.length; n += 2){
+                if (next < ranges[n]){
+                    re[z++] = next;
+                    re[z++] = (ranges[n]-1);
+                }
+                next = (ranges[n+1]+1);
+            }
+            if (next <= Character.MAX_VALUE){
+                re[z++] = next;
+                re[z++] = Character.MAX_VALUE;
+            }
+            if (0 == z)
+                return EMPTY;
+            else
+                return new CharRangeSet((z < re.length)?(Arrays.copyOf(re,z)):(re));
+        }
+    }
+    public CharRangeSet minus(CharRangeSet that){
+        if (0 == that.ranges.length)
+            return this;
+        else
+            return this.intersection(that.complement());
+    }
+    /**
+     * @return Sorted start points of the intervals on which
+     * membership is constant, from <code>Character.MIN_VALUE</code>
+     */
+    public char[] getStartPoints(){
+        final int[] ranges = this.ranges;
+        char[] points = new char[ranges.length+1];
+        int z = 0;
+        if (0 == ranges.length || Character.MIN_VALUE != ranges[0])
+            points[z++] = Character.MIN_VALUE;
+        for (int n = 0; n < ranges.length; n += 2){
+            points[z++] = (char)ranges[n];
+            if (ranges[n+1] < Character.MAX_VALUE)
+                points[z++] = (char)(ranges[n+1]+1);
+        }
+        return (z < points.length)?(Arrays.copyOf(points,z)):(points);
+    }
+    /**
+     * @return The (min, max) pairs
+     */
+    public char[] toCharArray(){
+        final int[] ranges = this.ranges;
+        char[] re = new char[ranges.length];
+        for (int n = 0; n < ranges.length; n++)
+            re[n] = (char)ranges[n];
+        return re;
+    }
+    public int hashCode(){
+        int hash = this.hash;
+        if (0 == hash){
+            hash = Arrays.hashCode(this.ranges);
+            if (0 == hash)
+                hash = 1;
+            this.hash = hash;
+        }
+        return hash;
+    }
+    public boolean equals(Object that){
+        if (this == that)
+            return true;
+        else if (that instanceof CharRangeSet)
+            return Arrays.equals(this.ranges,((CharRangeSet)that).ranges);
+        else
+            return false;
+    }
+    public int compareTo(CharRangeSet that){
+        final int[] a = this.ranges, b = that.ranges;
+        for (int n = 0, z = Math.min(a.length,b.length); n < z; n++){
+            if (a[n] != b[n])
+                return (a[n] < b[n])?(-1):(1);
+        }
+        return (a.length - b.length);
+    }
+    public String toString(){
+        final int[] ranges = this.ranges;
+        StringBuilder b = new StringBuilder();
+        b.append('[');
+        for (int n = 0; n < ranges.length; n += 2){
+            Transition.appendCharString((char)ranges[n], b);
+            if (ranges[n] != ranges[n+1]){
+                b.append('-');
+                Transition.appendCharString((char)ranges[n+1], b);
+            }
+        }
+        b.append(']');
+        return b.toString();
+    }
+
+    /**
+     * Refinement of the alphabet into the intervals on which the
+     * membership of every added range or set is constant.  The
+     * boundaries are collected in a primitive buffer that is reused
+     * after {@link #clear()}.
+     */
+    public final static class Partition
+        extends Object
+    {
+        private int[] bounds;
+
+        private int size;
+
+
+        public Partition(){
+            this(0x10);
+        }
+        /**
+         * @param ranges Expected number of ranges
+         */
+        public Partition(int ranges){
+            super();
+            this.bounds = new int[Math.max(0x10,(2*ranges))];
+        }
+
+
+        public Partition clear(){
+            this.size = 0;
+            return this;
+        }
+        public Partition add(char min, char max){
+            int[] bounds = this.bounds;
+            if (this.size+2 > bounds.length)
+                this.bounds = bounds = Arrays.copyOf(bounds,(2*bounds.length));
+            bounds[this.size++] = min;
+            if (max < Character.MAX_VALUE)
+                bounds[this.size++] = (max+1);
+            return this;
+        }
+        public Partition add(CharRangeSet set){
+            final int[] ranges = set.ranges;
+            for (int n = 0; n < ranges.length; n += 2)
+                this.add((char)ranges[n], (char)ranges[n+1]);
+            return this;
+        }
+        /**
+         * @return Sorted interval start points, from
+         * <code>Character.MIN_VALUE</code>
+         * @see Automaton#getStartPoints()
+         */
+        public char[] getStartPoints(){
+            final int[] bounds = this.bounds;
+            final int size = this.size;
+            Arrays.sort(bounds,0,size);
+            char[] points = new char[size+1];
+            int z = 0;
+            points[z++] = Character.MIN_VALUE;
+            for (int n = 0; n < size; n++){
+                if (points[z-1] != bounds[n])
+                    points[z++] = (char)bounds[n];
+            }
+            return (z < points.length)?(Arrays.copyOf(points,z)):(points);
+        }
+    }
+    /**
+     * Canonical sets of the general categories of the basic
+     * multilingual plane, derived once from
+     * <code>Character.getType</code> on first use.
+     */
+    private final static class Categories
+        extends Object
+    {
+        /**
+         * Category names by <code>Character.getType</code>
+         */
+        private final static String[] TypeNames = new String[Character.FINAL_QUOTE_PUNCTUATION+1];
+        static {
+            TypeNames[Character.UNASSIGNED] = "Cn";
+            TypeNames[Character.UPPERCASE_LETTER] = "Lu";
+            TypeNames[Character.LOWERCASE_LETTER] = "Ll";
+            TypeNames[Character.TITLECASE_LETTER] = "Lt";
+            TypeNames[Character.MODIFIER_LETTER] = "Lm";
+            TypeNames[Character.OTHER_LETTER] = "Lo";
+            TypeNames[Character.NON_SPACING_MARK] = "Mn";
+            TypeNames[Character.ENCLOSING_MARK] = "Me";
+            TypeNames[Character.COMBINING_SPACING_MARK] = "Mc";
+            TypeNames[Character.DECIMAL_DIGIT_NUMBER] = "Nd";
+            TypeNames[Character.LETTER_NUMBER] = "Nl";
+            TypeNames[Character.OTHER_NUMBER] = "No";
+            TypeNames[Character.SPACE_SEPARATOR] = "Zs";
+            TypeNames[Character.LINE_SEPARATOR] = "Zl";
+            TypeNames[Character.PARAGRAPH_SEPARATOR] = "Zp";
+            TypeNames[Character.CONTROL] = "Cc";
+            TypeNames[Character.FORMAT] = "Cf";
+            TypeNames[Character.PRIVATE_USE] = "Co";
+            TypeNames[Character.SURROGATE] = "Cs";
+            TypeNames[Character.DASH_PUNCTUATION] = "Pd";
+            TypeNames[Character.START_PUNCTUATION] = "Ps";
+            TypeNames[Character.END_PUNCTUATION] = "Pe";
+            TypeNames[Character.CONNECTOR_PUNCTUATION] = "Pc";
+            TypeNames[Character.OTHER_PUNCTUATION] = "Po";
+            TypeNames[Character.MATH_SYMBOL] = "Sm";
+            TypeNames[Character.CURRENCY_SYMBOL] = "Sc";
+            TypeNames[Character.MODIFIER_SYMBOL] = "Sk";
+            TypeNames[Character.OTHER_SYMBOL] = "So";
+            TypeNames[Character.INITIAL_QUOTE_PUNCTUATION] = "Pi";
+            TypeNames[Character.FINAL_QUOTE_PUNCTUATION] = "Pf";
+        }
+        private final static String Majors = "LMNPSZC";
+        /**
+         * Sets by <code>Character.getType</code>, null for an
+         * unused type
+         */
+        final static CharRangeSet[] Type = new CharRangeSet[TypeNames.length];
+        /**
+         * Category names followed by major class names
+         */
+        final static String[] Names;
+        /**
+         * Sets by index of name
+         */
+        final static CharRangeSet[] Sets;
+        static {
+            /*
+             * One pass over the plane, with a run of characters
+             * of a type closed into a range of that type
+             */
+            int[][] buffers = new int[TypeNames.length][];
+            int[] sizes = new int[TypeNames.length];
+            int start = Character.MIN_VALUE, type = Character.getType(Character.MIN_VALUE);
+            for (int c = (Character.MIN_VALUE+1); c <= (Character.MAX_VALUE+1); c++){
+                final int next = ((c <= Character.MAX_VALUE)?(Character.getType((char)c)):(-1));
+                if (next != type){
+                    int[] buffer = buffers[type];
+                    if (null == buffer)
+                        buffers[type] = buffer = new int[0x10];
+                    else if (sizes[type]+2 > buffer.length)
+                        buffers[type] = buffer = Arrays.copyOf(buffer,(2*buffer.length));
+                    buffer[sizes[type]++] = start;
+                    buffer[sizes[type]++] = (c-1);
+                    start = c;
+                    type = next;
+                }
+            }
+            int count = 0;
+            for (int t = 0; t < TypeNames.length; t++){
+                if (null != TypeNames[t]){
+                    if (null != buffers[t])
+                        Type[t] = new CharRangeSet(Arrays.copyOf(buffers[t],sizes[t]));
+                    else
+                        Type[t] = EMPTY;
+                    count += 1;
+                }
+            }
+            Names = new String[count+Majors.length()];
+            Sets = new CharRangeSet[Names.length];
+            int z = 0;
+            for (int t = 0; t < TypeNames.length; t++){
+                if (null != TypeNames[t]){
+                    Names[z] = TypeNames[t];
+                    Sets[z++] = Type[t];
+                }
+            }
+            for (int m = 0; m < Majors.length(); m++){
+                final char major = Majors.charAt(m);
+                CharRangeSet set = EMPTY;
+                for (int t = 0; t < TypeNames.length; t++){
+                    if (null != TypeNames[t] && major == TypeNames[t].charAt(0))
+                        set = set.union(Type[t]);
+                }
+                Names[z] = String.valueOf(major);
+                Sets[z++] = set;
+            }
+        }
+    }
+}
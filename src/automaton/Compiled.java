@@ -30,8 +30,6 @@
 
 package automaton;
 
-import lxl.Set;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InvalidClassException;
@@ -42,6 +40,9 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author Anders Møller
@@ -55,26 +56,63 @@ public class Compiled
     protected final int size;
     protected final State[] accept;
     protected final int initial, terminal, classmaplen;
+    protected final int[] rows;        // offset into transitions by state, or null, see RELATIVE
     protected final int[] transitions; // delta(state,c) = transitions[state * points.length + ClassMap[c]]
     protected final char[] points;     // char interval start points
     protected final int[] classmap;    // map from char number to class class
 
 
+    /**
+     * When {@link #rows} is not null, a transition to state
+     * <code>(state + d)</code> for <code>d</code> in negative one to
+     * one is stored as <code>(RELATIVE - d)</code> in the shared row
+     * of the state.  Other transitions are stored as the destination
+     * state number, or negative one for none.
+     */
+    protected final static int RELATIVE = -3;
+    /**
+     * Number of inputs stepped in turn by a batch match
+     */
+    protected final static int Lanes = 4;
+    /**
+     * Least length of the table of transitions for which a batch
+     * match steps inputs in turn.  A smaller table remains in cache,
+     * where the bookkeeping of lanes costs more than it saves.
+     */
+    protected final static int LanesTable = 0x10000;
+    /**
+     * System property <code>automaton.Compiled.ParallelBatch</code>
+     * is the least number of inputs of a batch match run in parallel
+     * with the executor of subset construction, default 0x4000.
+     * @see BasicOperations#GetExecutor()
+     */
+    public final static int ParallelBatch;
+    static {
+        int batch = 0x4000;
+        String config = System.getProperty("automaton.Compiled.ParallelBatch");
+        if (null != config){
+            try {
+                batch = Math.max(1,Integer.parseInt(config));
+            }
+            catch (NumberFormatException exc){
+            }
+        }
+        ParallelBatch = batch;
+    }
+
+
     public Compiled(Automaton a, boolean index) {
         super();
         a.determinize();
         this.points = a.getStartPoints();
-        Set<State> states = a.getStates();
-        Automaton.SetStateNumbers(states);
+        State[] states = a.getStateArray();
         this.initial = a.initial.number;
         /*
          */
-        this.size = states.size();
+        this.size = states.length;
         this.accept = new State[size];
-        {
-            this.transitions = new int[this.size * this.points.length];
-            Arrays.fill(this.transitions,-1);
-        }
+        final int[] transitions = new int[this.size * this.points.length];
+        Arrays.fill(transitions,-1);
         final int pointslen = this.points.length;
 
         this.terminal = (pointslen-1);
@@ -89,53 +127,187 @@ public class Compiled
             for (int c = 0; c < pointslen; c++) {
                 State q = s.step(this.points[c]);
                 if (q != null){
-                    this.transitions[nofs + c] = q.number;
+                    transitions[nofs + c] = q.number;
                 }
             }
         }
+        final int[][] rows = Rows(transitions, this.size, pointslen);
+        if (null != rows){
+            this.rows = rows[0];
+            this.transitions = rows[1];
+        }
+        else {
+            this.rows = null;
+            this.transitions = transitions;
+        }
 
         if (index){
-            /*
-             * Index points, equivalent to
-             *   SpecialOperations.FindIndex(c, this.points);
-             * for char c.
-             */
-            int classmaplen = 0;
-            for (int c = 0, ix = 0; c <= Character.MAX_VALUE; c++) {
-
-                if (ix < this.terminal){
-                    if (c == this.points[ix + 1])
-                        ix++;
-                }
-                else {
-                    classmaplen = c;
-                    break;
-                }
-            }
-            int[] classmap = new int[classmaplen];
-            for (int c = 0, ix = 0; c < classmaplen; c++) {
+            this.classmap = ClassMap(this.points);
+            this.classmaplen = this.classmap.length;
+        }
+        else {
+            this.classmap = null;
+            this.classmaplen = 0;
+        }
+    }
+    /**
+     * @param initial Initial state number
+     * @param accept States by number, for acceptance and name
+     * @param transitions Table of destination state numbers by state
+     * and point, as defined for {@link #transitions}
+     * @param points Sorted interval start points, including zero
+     */
+    protected Compiled(int initial, State[] accept, int[] transitions, char[] points, boolean index){
+        super();
+        this.size = accept.length;
+        this.accept = accept;
+        this.initial = initial;
+        final int[][] rows = Rows(transitions, this.size, points.length);
+        if (null != rows){
+            this.rows = rows[0];
+            this.transitions = rows[1];
+        }
+        else {
+            this.rows = null;
+            this.transitions = transitions;
+        }
+        this.points = points;
+        this.terminal = (points.length-1);
+        if (index){
+            this.classmap = ClassMap(points);
+            this.classmaplen = this.classmap.length;
+        }
+        else {
+            this.classmap = null;
+            this.classmaplen = 0;
+        }
+    }
 
-                if (ix < this.terminal){
-                    if (c == this.points[ix + 1])
-                        ix++;
 
-                    classmap[c] = ix;
+    /**
+     * Rewrite each row of the table with neighboring destinations
+     * relative to its state, and share equal rows.  The repeated
+     * rows of a chain, as for a bounded repetition of a character
+     * class, reduce to one.  This is a constant factor compaction of
+     * the table: the states, and the row offsets and accept entries
+     * by state, remain linear in the bound of the repetition.
+     * @param table Destination state numbers, or negative one, by
+     * state and point
+     * @return Row offsets by state, and table of distinct rows, or
+     * null when sharing would not halve the rows of the table
+     */
+    protected static int[][] Rows(int[] table, int size, int pointslen){
+        int[] rows = new int[size];
+        int[] distinct = new int[Math.max(1,pointslen)];
+        int count = 0;
+        int[] index = new int[Math.max(4,Integer.highestOneBit(Math.max(1,size))<<2)];
+        Arrays.fill(index,-1);
+        final int mask = (index.length-1);
+        int[] row = new int[pointslen];
+        for (int s = 0, ofs = 0; s < size; s++, ofs += pointslen){
+            int h = 0;
+            for (int c = 0; c < pointslen; c++){
+                final int t = table[ofs + c];
+                final int d = (t - s);
+                row[c] = (-1 != t && -1 <= d && d <= 1)?(RELATIVE - d):(t);
+                h = (31*h) + row[c];
+            }
+            h ^= (h >>> 16);
+            int slot = (h & mask);
+            int found = -1;
+            for (int x; -1 != (x = index[slot]); slot = ((slot+1) & mask)){
+                if (Equals(distinct,x,row,pointslen)){
+                    found = x;
+                    break;
                 }
             }
-            this.classmap = classmap;
-            this.classmaplen = classmaplen;
+            if (-1 == found){
+                found = (count * pointslen);
+                count += 1;
+                if (found + pointslen > distinct.length)
+                    distinct = Arrays.copyOf(distinct,Math.max(found + pointslen,2*distinct.length));
+                System.arraycopy(row,0,distinct,found,pointslen);
+                index[slot] = found;
+            }
+            rows[s] = found;
         }
-        else {
-            this.classmap = null;
-            this.classmaplen = 0;
+        if ((2 * count) > size)
+            return null;
+        else
+            return new int[][]{rows,Arrays.copyOf(distinct,count * pointslen)};
+    }
+    private static boolean Equals(int[] distinct, int ofs, int[] row, int len){
+        for (int c = 0; c < len; c++){
+            if (distinct[ofs + c] != row[c])
+                return false;
         }
+        return true;
     }
+    /**
+     * Index points, equivalent to
+     *   SpecialOperations.FindIndex(c, points);
+     * for char c, up to the last point.
+     */
+    protected static int[] ClassMap(char[] points){
+        final int terminal = (points.length-1);
+        int classmaplen = 0;
+        for (int c = 0, ix = 0; c <= Character.MAX_VALUE; c++) {
+
+            if (ix < terminal){
+                if (c == points[ix + 1])
+                    ix++;
+            }
+            else {
+                classmaplen = c;
+                break;
+            }
+        }
+        int[] classmap = new int[classmaplen];
+        for (int c = 0, ix = 0; c < classmaplen; c++) {
+
+            if (ix < terminal){
+                if (c == points[ix + 1])
+                    ix++;
 
+                classmap[c] = ix;
+            }
+        }
+        return classmap;
+    }
 
     public final int step(int state, char c) {
 
+        if (null != this.rows)
+            return this.stepRelative(state, c);
+
         final int row = (state * this.points.length);
 
+        final int t;
+
+        if (this.classmap == null)
+            t = this.transitions[row + SpecialOperations.FindIndex(c, this.points)];
+
+        else if (c < this.classmaplen)
+            t = this.transitions[row + this.classmap[c]];
+        else
+            t = this.transitions[row + this.terminal];
+
+        if (Automaton.Trace){
+            if (-1 < t){
+                System.err.printf("step <%c %s> -> <%s>%n",c,this.accept[state].name(),this.accept[t].name());
+            }
+            else
+                System.err.printf("step <%c %s> -> <>%n",c,this.accept[state].name());
+        }
+        return t;
+    }
+    /**
+     * Step in the shared rows of {@link #RELATIVE} transitions
+     */
+    private int stepRelative(int state, char c) {
+
+        final int row = this.rows[state];
+
         int t;
 
         if (this.classmap == null)
@@ -146,6 +318,9 @@ public class Compiled
         else
             t = this.transitions[row + this.terminal];
 
+        if (t < -1)
+            t = state + (RELATIVE - t);
+
         if (Automaton.Trace){
             if (-1 < t){
                 System.err.printf("step <%c %s> -> <%s>%n",c,this.accept[state].name(),this.accept[t].name());
@@ -172,6 +347,9 @@ public class Compiled
      * @return Last offset in match (inclusive), or negative one.
      */
     public final int runMatch(CharSequence s, int ofs) {
+        if (s instanceof jauk.Rope)
+            return this.runMatch((jauk.Rope)s,ofs);
+
         final int len = s.length();
         int p = this.initial;
         int end = -1;
@@ -201,6 +379,9 @@ public class Compiled
      * @return First and last offsets (inclusive) in match, or null
      */
     public final int[] runSearch(CharSequence s, int ofs) {
+        if (s instanceof jauk.Rope)
+            return this.runSearch((jauk.Rope)s,ofs);
+
         final int len = s.length();
         int p = this.initial;
         int min = -1, max = -1;
@@ -229,10 +410,392 @@ public class Compiled
         else
             return null;
     }
+    /**
+     * Continue {@link #runMatch(CharSequence,int)} from the position
+     * of the run over input that becomes available in blocks.
+     * @param s Input available from the global offset
+     * <code>base</code>, up to the end of the available input
+     * @return The run is done, and its end is final.  Otherwise the
+     * available input has been consumed, to be resumed with more, or
+     * to be finished at the end of the input.
+     * @see Run#finish()
+     */
+    public final boolean resume(Run run, CharSequence s, long base) {
+        if (run.done)
+            return true;
+        else {
+            int p = run.state;
+            long end = run.end;
+            final int len = s.length();
+            for (int ofs = (int)(run.position - base); ofs < len; ofs++) {
+
+                p = this.step(p, s.charAt(ofs));
+                if (p == -1){
+                    run.done = true;
+                    break;
+                }
+                else if (this.accept[p].accept){
+
+                    end = (base + ofs);
+                }
+                else if (-1L != end){
+                    run.done = true;
+                    break;
+                }
+            }
+            run.state = p;
+            run.end = end;
+            run.position = (base + len);
+            return run.done;
+        }
+    }
+    /**
+     * Equivalent to {@link #runMatch(CharSequence,int)}, stepping
+     * through each fragment in turn.
+     * @return Last offset in match (inclusive), or negative one.
+     */
+    public final int runMatch(jauk.Rope s, int ofs) {
+        int p = this.initial;
+        int end = -1;
+        for (int seg = s.segment(ofs), count = s.count(); seg < count; seg++){
+            final int base = s.offset(seg);
+            final int lim = (s.offset(seg+1) - base);
+            final char[] array = s.array(seg);
+            if (null != array){
+                final int from = s.from(seg);
+                for (int i = (ofs - base); i < lim; i++){
+
+                    p = this.step(p, array[from + i]);
+                    if (p == -1)
+                        return end;
+                    else if (this.accept[p].accept)
+                        end = (base + i);
+                    else if (-1 != end)
+                        return end;
+                }
+            }
+            else {
+                final CharSequence sequence = s.sequence(seg);
+                for (int i = (ofs - base); i < lim; i++){
+
+                    p = this.step(p, sequence.charAt(i));
+                    if (p == -1)
+                        return end;
+                    else if (this.accept[p].accept)
+                        end = (base + i);
+                    else if (-1 != end)
+                        return end;
+                }
+            }
+            ofs = (base + lim);
+        }
+        return end;
+    }
+    /**
+     * Equivalent to {@link #runSearch(CharSequence,int)}, stepping
+     * through each fragment in turn.
+     * @return First and last offsets (inclusive) in match, or null
+     */
+    public final int[] runSearch(jauk.Rope s, int ofs) {
+        int p = this.initial;
+        int min = -1, max = -1;
+        for (int seg = s.segment(ofs), count = s.count(); seg < count && -1 != p; seg++){
+            final int base = s.offset(seg);
+            final int lim = (s.offset(seg+1) - base);
+            final char[] array = s.array(seg);
+            final CharSequence sequence = s.sequence(seg);
+            final int from = s.from(seg);
+            for (int i = (ofs - base); i < lim; i++){
+
+                if (this.accept[p].accept){
+                    if (-1 == min){
+                        min = (base + i);
+                    }
+                    max = (base + i);
+                }
+                p = this.step(p, (null != array)?(array[from + i]):(sequence.charAt(i)));
+                if (p == -1){
+                    break;
+                }
+            }
+            ofs = (base + lim);
+        }
+        if (-1 != p && this.accept[p].accept){
+            if (-1 == min){
+                min = ofs;
+            }
+            max = ofs;
+        }
+        /*
+         */
+        if (-1 != min && -1 != max){
+
+            return new int[]{min,max};
+        }
+        else
+            return null;
+    }
+    public final long[] run(Op op, jauk.Segmented s, long ofs) {
+        switch(op){
+        case Match:
+            return new long[]{
+                ofs,
+                this.runMatch(s,ofs)
+            };
+        case Search:
+            return this.runSearch(s,ofs);
+        default:
+            throw new Error(op.name());
+        }
+    }
+    /**
+     * Equivalent to {@link #runMatch(CharSequence,int)}, stepping
+     * through each segment in turn.
+     * @return Last offset in match (inclusive), or negative one.
+     */
+    public final long runMatch(jauk.Segmented s, long ofs) {
+        int p = this.initial;
+        long end = -1L;
+        for (int seg = s.segment(ofs), count = s.count(); seg < count; seg++){
+            final java.nio.CharBuffer b = s.segment(seg);
+            final long base = s.offset(seg);
+            for (int i = (int)(ofs - base), lim = b.limit(); i < lim; i++){
+
+                p = this.step(p, b.get(i));
+                if (p == -1)
+                    return end;
+                else if (this.accept[p].accept)
+                    end = (base + i);
+                else if (-1L != end)
+                    return end;
+            }
+            ofs = (base + b.limit());
+        }
+        return end;
+    }
+    /**
+     * Equivalent to {@link #runSearch(CharSequence,int)}, stepping
+     * through each segment in turn.
+     * @return First and last offsets (inclusive) in match, or null
+     */
+    public final long[] runSearch(jauk.Segmented s, long ofs) {
+        int p = this.initial;
+        long min = -1L, max = -1L;
+        for (int seg = s.segment(ofs), count = s.count(); seg < count && -1 != p; seg++){
+            final java.nio.CharBuffer b = s.segment(seg);
+            final long base = s.offset(seg);
+            for (int i = (int)(ofs - base), lim = b.limit(); i < lim; i++){
+
+                if (this.accept[p].accept){
+                    if (-1L == min){
+                        min = (base + i);
+                    }
+                    max = (base + i);
+                }
+                p = this.step(p, b.get(i));
+                if (p == -1){
+                    break;
+                }
+            }
+            ofs = (base + b.limit());
+        }
+        if (-1 != p && this.accept[p].accept){
+            if (-1L == min){
+                min = ofs;
+            }
+            max = ofs;
+        }
+        /*
+         */
+        if (-1L != min && -1L != max){
+
+            return new long[]{min,max};
+        }
+        else
+            return null;
+    }
     public boolean matches(CharSequence string){
 
 	return this.match(string).terminal();
     }
+    /**
+     * Batch match from offset zero of each input, without a {@link
+     * Match} per input.
+     * @return Inputs matched entirely, as by {@link #matches}
+     */
+    public BitSet matchAll(CharSequence[] inputs){
+        final int[] ends = this.matchEnds(inputs);
+        BitSet matched = new BitSet(inputs.length);
+        for (int cc = 0, count = inputs.length; cc < count; cc++){
+            if (ends[cc] == inputs[cc].length())
+                matched.set(cc);
+        }
+        return matched;
+    }
+    /**
+     * Batch match from offset zero of each input, without a {@link
+     * Match} per input.  Inputs are run in parallel ranges with the
+     * executor of subset construction, from {@link #ParallelBatch}
+     * inputs.
+     * @return End of the match of each input (exclusive), as {@link
+     * Match#next()}, or zero for none
+     */
+    public int[] matchEnds(CharSequence[] inputs){
+        final int count = inputs.length;
+        int[] ends = new int[count];
+        final ExecutorService executor = BasicOperations.GetExecutor();
+        if (null == executor || count < ParallelBatch)
+            this.runMatch(inputs,0,count,ends);
+        else {
+            final int tasks = (4 * Runtime.getRuntime().availableProcessors());
+            final int chunk = Math.max(Batch.Chunk,((count + tasks - 1) / tasks));
+            java.util.List<Batch> list = new java.util.ArrayList<Batch>(tasks);
+            for (int from = 0; from < count; from += chunk){
+                list.add(new Batch(this,inputs,from,Math.min(count,(from + chunk)),ends));
+            }
+            BasicOperations.Invoke(executor,list);
+        }
+        return ends;
+    }
+    /**
+     * Equivalent to {@link #runMatch(CharSequence,int)} from offset
+     * zero for each input in the range, storing the end of the match
+     * (exclusive) or zero.  For a table of at least {@link
+     * #LanesTable} transitions, inputs are stepped in turn by {@link
+     * #Lanes}, so that the table loads of each overlap those of the
+     * others.
+     */
+    protected final void runMatch(CharSequence[] inputs, int from, int to, int[] ends){
+        if (this.transitions.length < LanesTable){
+            for (int i = from; i < to; i++){
+                ends[i] = (this.runMatch(inputs[i],0)+1);
+            }
+            return;
+        }
+        final int[] input = new int[Lanes];
+        final int[] state = new int[Lanes];
+        final int[] ofs = new int[Lanes];
+        final int[] end = new int[Lanes];
+        int next = from, active = 0;
+        for (int k = 0; k < Lanes; k++){
+            if (next < to){
+                input[k] = next++;
+                state[k] = this.initial;
+                ofs[k] = 0;
+                end[k] = -1;
+                active += 1;
+            }
+            else
+                input[k] = -1;
+        }
+        while (0 < active){
+            for (int k = 0; k < Lanes; k++){
+                final int i = input[k];
+                if (-1 < i){
+                    final CharSequence s = inputs[i];
+                    boolean done;
+                    if (ofs[k] < s.length()){
+                        final int p = this.step(state[k], s.charAt(ofs[k]));
+                        if (p == -1)
+                            done = true;
+                        else if (this.accept[p].accept){
+                            end[k] = ofs[k];
+                            done = false;
+                        }
+                        else
+                            done = (-1 != end[k]);
+
+                        state[k] = p;
+                        ofs[k] += 1;
+                    }
+                    else
+                        done = true;
+
+                    if (done){
+                        ends[i] = (end[k]+1);
+                        if (next < to){
+                            input[k] = next++;
+                            state[k] = this.initial;
+                            ofs[k] = 0;
+                            end[k] = -1;
+                        }
+                        else {
+                            input[k] = -1;
+                            active -= 1;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    /**
+     * Find all non overlapping matches from the offset.  A match is
+     * that of {@link #runMatch(CharSequence,int)} at an offset, and
+     * the search continues from its end, or otherwise from the next
+     * offset.
+     * @param into Appended
+     * @return Argument <code>into</code>
+     */
+    public Matches findAll(CharSequence s, int ofs, Matches into){
+        for (final int len = s.length(); ofs < len; ){
+            final int end = this.runMatch(s,ofs);
+            if (-1 < end){
+                into.add(s,ofs,(end+1),0);
+                ofs = (end+1);
+            }
+            else
+                ofs += 1;
+        }
+        return into;
+    }
+    public Matches findAll(CharSequence s){
+
+        return this.findAll(s,0,new Matches());
+    }
+    /**
+     * @return Number of matches as found by {@link
+     * #findAll(CharSequence,int,Matches)}
+     */
+    public int count(CharSequence s, int ofs){
+        int count = 0;
+        for (final int len = s.length(); ofs < len; ){
+            final int end = this.runMatch(s,ofs);
+            if (-1 < end){
+                count += 1;
+                ofs = (end+1);
+            }
+            else
+                ofs += 1;
+        }
+        return count;
+    }
+    /**
+     * Split the input from the offset into the segments between the
+     * matches found by {@link #findAll(CharSequence,int,Matches)},
+     * including empty segments.  There is one more segment than
+     * matches.
+     * @param into Appended
+     * @return Argument <code>into</code>
+     */
+    public Matches split(CharSequence s, int ofs, Matches into){
+        int segment = ofs;
+        for (final int len = s.length(); ofs < len; ){
+            final int end = this.runMatch(s,ofs);
+            if (-1 < end){
+                into.add(s,segment,ofs,0);
+                ofs = (end+1);
+                segment = ofs;
+            }
+            else
+                ofs += 1;
+        }
+        into.add(s,segment,Math.max(segment,s.length()),0);
+        return into;
+    }
+    public Matches split(CharSequence s){
+
+        return this.split(s,0,new Matches());
+    }
     public Match match(CharSequence s)  {
 
         return new Match(Op.Match, s, this);
@@ -257,6 +820,14 @@ public class Compiled
 
         return new Match(Op.Search, s,this,start,lno);
     }
+    public LargeMatch match(jauk.Segmented s, long start, long lno)  {
+
+        return new LargeMatch(Op.Match, s,this,start,lno);
+    }
+    public LargeMatch search(jauk.Segmented s, long start, long lno)  {
+
+        return new LargeMatch(Op.Search, s,this,start,lno);
+    }
     public String toString() {
         StringBuilder b = new StringBuilder();
         b.append("initial state: ").append(initial).append("\n");
@@ -267,7 +838,9 @@ public class Compiled
             else
                 b.append(" [reject]:\n");
             for (int j = 0; j < points.length; j++) {
-                int k = transitions[i * points.length + j];
+                int k = transitions[((null != rows)?(rows[i]):(i * points.length)) + j];
+                if (k < -1)
+                    k = i + (RELATIVE - k);
                 if (k != -1) {
                     char min = points[j];
                     char max;
@@ -287,4 +860,94 @@ public class Compiled
         }
         return b.toString();
     }
+    /**
+     * State of a run of {@link #resume(Run,CharSequence,long)} with
+     * global offsets.
+     */
+    public final static class Run
+        extends Object
+    {
+        protected long start;
+
+        protected int state;
+
+        protected long position, end = -1L;
+
+        protected boolean done;
+
+
+        public Run(Compiled automaton, long start){
+            super();
+            this.start = start;
+            this.state = automaton.initial;
+            this.position = start;
+        }
+
+
+        public long start(){
+            return this.start;
+        }
+        /**
+         * @return Last offset in match (inclusive), or negative one
+         */
+        public long end(){
+            return this.end;
+        }
+        public boolean done(){
+            return this.done;
+        }
+        /**
+         * End of input: the run is done.
+         */
+        public Run finish(){
+            this.done = true;
+            return this;
+        }
+        /**
+         * Restart from the initial state at <code>start</code>, for
+         * reuse in place of a new run.
+         */
+        public Run reset(Compiled automaton, long start){
+            this.start = start;
+            this.state = automaton.initial;
+            this.position = start;
+            this.end = -1L;
+            this.done = false;
+            return this;
+        }
+    }
+    /**
+     * Batch match of a range of inputs by a thread of the executor.
+     * Ranges are disjoint among tasks.
+     */
+    private final static class Batch
+        extends Object
+        implements Callable<Batch>
+    {
+        final static int Chunk = 0x400;
+
+        final Compiled automaton;
+
+        final CharSequence[] inputs;
+
+        final int from, to;
+
+        final int[] ends;
+
+
+        Batch(Compiled automaton, CharSequence[] inputs, int from, int to, int[] ends){
+            super();
+            this.automaton = automaton;
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+            this.ends = ends;
+        }
+
+
+        public Batch call(){
+            this.automaton.runMatch(this.inputs,this.from,this.to,this.ends);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,606 @@
+/*
+ * automaton
+ * 
+ * Copyright (c) 2001-2011 Anders Moeller
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+
+/**
+ * Construction of deterministic automata directly from regular
+ * expressions by Brzozowski derivatives over character classes,
+ * after Owens, Reppy and Turon, "Regular-expression derivatives
+ * re-examined" (2009).
+ * 
+ * Expression terms are built through normalizing constructors and
+ * interned, so that similar terms are identical.  Each term is a
+ * state of the result, and the derivatives of a term are computed
+ * once for each of its derivative classes: the intervals between
+ * its start points.  Complement and intersection cost no more than
+ * union.  Named automata and numeric intervals are embedded as the
+ * states of their deterministic automata.
+ * 
+ * @see RegExp#toAutomatonByDerivatives(boolean)
+ * @author John Pritchard
+ */
+public final class DerivativeOperations
+    extends Object
+{
+    /**
+     * @return Deterministic automaton for the expression
+     */
+    public static Automaton Build(RegExp re, boolean minimize){
+        DerivativeOperations ops = new DerivativeOperations();
+        Packed p = ops.build(re.toTerm(ops));
+        if (minimize)
+            p = MinimizationOperations.Minimize(p);
+        else
+            p = BasicOperations.RemoveDeadTransitions(p);
+        return p.toAutomaton();
+    }
+
+
+    final static int EMPTY = 0;
+    final static int EPSILON = 1;
+    final static int SET = 2;
+    final static int CONCATENATION = 3;
+    final static int UNION = 4;
+    final static int INTERSECTION = 5;
+    final static int COMPLEMENT = 6;
+    final static int REPEAT = 7;
+    final static int STATE = 8;
+
+    private final static char[] NO_POINTS = {Character.MIN_VALUE};
+
+    private final static Term[] NO_TERMS = new Term[0];
+
+
+    /**
+     * Interned terms by structure
+     */
+    private Term[] table = new Term[0x100];
+
+    private int count;
+    /**
+     * Embedded deterministic automata
+     */
+    private Embedded[] embedded = new Embedded[0];
+
+    final Term empty, epsilon, any;
+
+
+    DerivativeOperations(){
+        super();
+        this.empty = this.intern(new Term(EMPTY));
+        this.epsilon = this.intern(new Term(EPSILON));
+        this.any = this.complement(this.empty);
+    }
+
+
+    /**
+     * Breadth first exploration of the derivatives of the initial
+     * term, numbered in order of discovery from zero.
+     */
+    Packed build(Term initial){
+        Packed.Builder b = new Packed.Builder();
+        Term[] states = new Term[0x10];
+        int size = 0;
+        initial.number = b.addState(initial.nullable);
+        states[size++] = initial;
+        for (int s = 0; s < size; s++){
+            final Term t = states[s];
+            final char[] points = t.points(this);
+            for (int n = 0; n < points.length; n++){
+                final Term d = t.derivative(this,n);
+                if (EMPTY != d.kind){
+                    if (-1 == d.number){
+                        d.number = b.addState(d.nullable);
+                        if (size == states.length)
+                            states = Arrays.copyOf(states,2*size);
+                        states[size++] = d;
+                    }
+                    final int max = (n+1 < points.length)?(points[n+1]-1):(Character.MAX_VALUE);
+                    b.addTransition(s,points[n],max,d.number);
+                }
+            }
+        }
+        return b.build(0,true);
+    }
+    /**
+     * @return Derivative of <code>t</code> by <code>c</code>
+     */
+    Term step(Term t, char c){
+        final char[] points = t.points(this);
+        int n = Arrays.binarySearch(points,c);
+        if (0 > n)
+            n = (-n-2);
+        return t.derivative(this,n);
+    }
+
+    /*
+     * Normalizing constructors
+     */
+
+    Term set(CharRangeSet ranges){
+        if (ranges.isEmpty())
+            return this.empty;
+        else {
+            Term t = new Term(SET);
+            t.ranges = ranges;
+            return this.intern(t);
+        }
+    }
+    Term set(char min, char max){
+        return this.set(CharRangeSet.Of(min,max));
+    }
+    Term string(String s){
+        Term t = this.epsilon;
+        for (int n = s.length()-1; -1 < n; n--){
+            final char c = s.charAt(n);
+            t = this.concatenation(this.set(c,c),t);
+        }
+        return t;
+    }
+    Term concatenation(Term a, Term b){
+        if (EMPTY == a.kind || EMPTY == b.kind)
+            return this.empty;
+        else if (EPSILON == a.kind)
+            return b;
+        else if (EPSILON == b.kind)
+            return a;
+        else if (CONCATENATION == a.kind)
+            return this.concatenation(a.a,this.concatenation(a.b,b));
+        else {
+            Term t = new Term(CONCATENATION);
+            t.a = a;
+            t.b = b;
+            return this.intern(t);
+        }
+    }
+    Term union(Term a, Term b){
+        return this.union(new Term[]{a,b});
+    }
+    /**
+     * Flatten, drop the empty term, merge character sets, sort by
+     * identity and remove duplicates.
+     */
+    Term union(Term[] list){
+        Term[] members = this.flatten(UNION,list);
+        CharRangeSet set = null;
+        int z = 0;
+        for (Term m : members){
+            if (m == this.any)
+                return this.any;
+            else if (SET == m.kind)
+                set = (null == set)?(m.ranges):(set.union(m.ranges));
+            else if (EMPTY != m.kind)
+                members[z++] = m;
+        }
+        if (null != set)
+            members[z++] = this.set(set);
+        return this.list(UNION,members,z,this.empty);
+    }
+    Term intersection(Term a, Term b){
+        return this.intersection(new Term[]{a,b});
+    }
+    /**
+     * Flatten, drop the universal term, merge character sets, sort
+     * by identity and remove duplicates.
+     */
+    Term intersection(Term[] list){
+        Term[] members = this.flatten(INTERSECTION,list);
+        CharRangeSet set = null;
+        int z = 0;
+        for (Term m : members){
+            if (EMPTY == m.kind)
+                return this.empty;
+            else if (SET == m.kind)
+                set = (null == set)?(m.ranges):(set.intersection(m.ranges));
+            else if (m != this.any)
+                members[z++] = m;
+        }
+        if (null != set){
+            if (set.isEmpty())
+                return this.empty;
+            else
+                members[z++] = this.set(set);
+        }
+        return this.list(INTERSECTION,members,z,this.any);
+    }
+    Term complement(Term a){
+        if (COMPLEMENT == a.kind)
+            return a.a;
+        else {
+            Term t = new Term(COMPLEMENT);
+            t.a = a;
+            return this.intern(t);
+        }
+    }
+    Term repeat(Term a){
+        return this.repeat(a,0,-1);
+    }
+    /**
+     * @param max Negative one for no maximum
+     */
+    Term repeat(Term a, int min, int max){
+        if (a.nullable)
+            min = 0;
+        if (-1 < max && min > max)
+            return this.empty;
+        else if (0 == max || EPSILON == a.kind)
+            return this.epsilon;
+        else if (EMPTY == a.kind)
+            return (0 == min)?(this.epsilon):(this.empty);
+        else if (1 == min && 1 == max)
+            return a;
+        else if (REPEAT == a.kind && 0 == a.min && -1 == a.max && 0 == min && -1 == max)
+            return a;
+        else {
+            Term t = new Term(REPEAT);
+            t.a = a;
+            t.min = min;
+            t.max = max;
+            return this.intern(t);
+        }
+    }
+    /**
+     * @return Term for the initial state of a deterministic copy of
+     * the automaton
+     */
+    Term automaton(Automaton a){
+        if (a.isSingleton())
+            return this.string(a.singleton);
+        else {
+            if (!a.isDeterministic()){
+                a = a.clone();
+                a.determinize();
+            }
+            Embedded e = new Embedded(this.embedded.length,a);
+            this.embedded = Arrays.copyOf(this.embedded,e.index+1);
+            this.embedded[e.index] = e;
+            return this.state(e,a.initial.number);
+        }
+    }
+
+    private Term state(Embedded e, int s){
+        Term t = e.terms[s];
+        if (null == t){
+            final State state = e.states[s];
+            if (state.accept && 0 == e.transitions[s].length)
+                t = this.epsilon;
+            else {
+                t = new Term(STATE);
+                t.embedded = e;
+                t.min = s;
+                t = this.intern(t);
+            }
+            e.terms[s] = t;
+        }
+        return t;
+    }
+    private Term[] flatten(int kind, Term[] list){
+        int len = 0;
+        for (Term m : list)
+            len += (kind == m.kind)?(m.list.length):(1);
+        Term[] members = new Term[len];
+        int z = 0;
+        for (Term m : list){
+            if (kind == m.kind){
+                System.arraycopy(m.list,0,members,z,m.list.length);
+                z += m.list.length;
+            }
+            else
+                members[z++] = m;
+        }
+        return members;
+    }
+    private Term list(int kind, Term[] members, int z, Term identity){
+        if (0 == z)
+            return identity;
+        else {
+            Arrays.sort(members,0,z);
+            int u = 1;
+            for (int n = 1; n < z; n++){
+                if (members[n] != members[u-1])
+                    members[u++] = members[n];
+            }
+            if (1 == u)
+                return members[0];
+            else {
+                Term t = new Term(kind);
+                t.list = Arrays.copyOf(members,u);
+                return this.intern(t);
+            }
+        }
+    }
+    private Term intern(Term t){
+        final int h = t.hash();
+        int mask = (this.table.length-1);
+        for (Term x = this.table[h & mask]; null != x; x = x.next){
+            if (h == x.hash && t.equals(x))
+                return x;
+        }
+        t.id = this.count++;
+        t.hash = h;
+        t.nullable = t.nullable();
+        t.next = this.table[h & mask];
+        this.table[h & mask] = t;
+        if (this.count > this.table.length){
+            Term[] table = new Term[2*this.table.length];
+            mask = (table.length-1);
+            for (Term x : this.table){
+                while (null != x){
+                    Term next = x.next;
+                    x.next = table[x.hash & mask];
+                    table[x.hash & mask] = x;
+                    x = next;
+                }
+            }
+            this.table = table;
+        }
+        return t;
+    }
+
+    /**
+     * Interned expression term.  The derivative of a term is
+     * constant over each interval of its start points, and cached by
+     * interval.
+     */
+    final static class Term
+        extends Object
+        implements Comparable<Term>
+    {
+        final int kind;
+
+        Term a, b;
+
+        Term[] list;
+
+        CharRangeSet ranges;
+
+        int min, max;
+
+        Embedded embedded;
+
+        int id, hash;
+
+        boolean nullable;
+
+        Term next;
+
+        int number = -1;
+
+        private char[] points;
+
+        private Term[] derivatives;
+
+
+        Term(int kind){
+            super();
+            this.kind = kind;
+        }
+
+
+        /**
+         * @return Sorted interval start points, from
+         * <code>Character.MIN_VALUE</code>
+         */
+        char[] points(DerivativeOperations ops){
+            if (null == this.points){
+                char[] points;
+                switch (this.kind){
+                case SET:
+                    points = this.ranges.getStartPoints();
+                    break;
+                case CONCATENATION:
+                    points = this.a.points(ops);
+                    if (this.a.nullable)
+                        points = CharRangeSet.Points(points,this.b.points(ops));
+                    break;
+                case UNION:
+                case INTERSECTION:
+                    points = NO_POINTS;
+                    for (Term m : this.list)
+                        points = CharRangeSet.Points(points,m.points(ops));
+                    break;
+                case COMPLEMENT:
+                case REPEAT:
+                    points = this.a.points(ops);
+                    break;
+                case STATE:{
+                    Transition[] transitions = this.embedded.transitions[this.min];
+                    points = new char[(2*transitions.length)+1];
+                    int z = 0;
+                    points[z++] = Character.MIN_VALUE;
+                    for (Transition t : transitions){
+                        if (t.min != points[z-1])
+                            points[z++] = t.min;
+                        if (t.max < Character.MAX_VALUE)
+                            points[z++] = (char)(t.max+1);
+                    }
+                    points = Arrays.copyOf(points,z);
+                    break;
+                }
+                default:
+                    points = NO_POINTS;
+                    break;
+                }
+                this.points = points;
+                this.derivatives = new Term[points.length];
+            }
+            return this.points;
+        }
+        /**
+         * @param n Interval index into {@link #points(DerivativeOperations) points}
+         */
+        Term derivative(DerivativeOperations ops, int n){
+            final char[] points = this.points(ops);
+            Term d = this.derivatives[n];
+            if (null == d){
+                final char c = points[n];
+                switch (this.kind){
+                case SET:
+                    d = (this.ranges.contains(c))?(ops.epsilon):(ops.empty);
+                    break;
+                case CONCATENATION:
+                    d = ops.concatenation(ops.step(this.a,c),this.b);
+                    if (this.a.nullable)
+                        d = ops.union(d,ops.step(this.b,c));
+                    break;
+                case UNION:
+                case INTERSECTION:{
+                    Term[] list = new Term[this.list.length];
+                    for (int m = 0; m < list.length; m++)
+                        list[m] = ops.step(this.list[m],c);
+                    if (UNION == this.kind)
+                        d = ops.union(list);
+                    else
+                        d = ops.intersection(list);
+                    break;
+                }
+                case COMPLEMENT:
+                    d = ops.complement(ops.step(this.a,c));
+                    break;
+                case REPEAT:
+                    d = ops.concatenation(ops.step(this.a,c),
+                                          ops.repeat(this.a,((0 < this.min)?(this.min-1):(0)),((0 < this.max)?(this.max-1):(this.max))));
+                    break;
+                case STATE:{
+                    d = ops.empty;
+                    for (Transition t : this.embedded.transitions[this.min]){
+                        if (t.min <= c && c <= t.max){
+                            d = ops.state(this.embedded,t.to.number);
+                            break;
+                        }
+                    }
+                    break;
+                }
+                default:
+                    d = ops.empty;
+                    break;
+                }
+                this.derivatives[n] = d;
+            }
+            return d;
+        }
+        boolean nullable(){
+            switch (this.kind){
+            case EPSILON:
+                return true;
+            case CONCATENATION:
+                return (this.a.nullable && this.b.nullable);
+            case UNION:
+                for (Term m : this.list){
+                    if (m.nullable)
+                        return true;
+                }
+                return false;
+            case INTERSECTION:
+                for (Term m : this.list){
+                    if (!m.nullable)
+                        return false;
+                }
+                return true;
+            case COMPLEMENT:
+                return (!this.a.nullable);
+            case REPEAT:
+                return (0 == this.min || this.a.nullable);
+            case STATE:
+                return this.embedded.states[this.min].accept;
+            default:
+                return false;
+            }
+        }
+        int hash(){
+            int h = this.kind;
+            h = (31*h) + ((null != this.a)?(this.a.id):(-1));
+            h = (31*h) + ((null != this.b)?(this.b.id):(-1));
+            if (null != this.list){
+                for (Term m : this.list)
+                    h = (31*h) + m.id;
+            }
+            if (null != this.ranges)
+                h = (31*h) + this.ranges.hashCode();
+            h = (31*h) + this.min;
+            h = (31*h) + this.max;
+            if (null != this.embedded)
+                h = (31*h) + this.embedded.index;
+            return (h ^ (h >>> 16));
+        }
+        public int hashCode(){
+            return this.hash;
+        }
+        public boolean equals(Object that){
+            if (this == that)
+                return true;
+            else if (that instanceof Term){
+                final Term t = (Term)that;
+                return (this.kind == t.kind && this.a == t.a && this.b == t.b
+                        && this.min == t.min && this.max == t.max && this.embedded == t.embedded
+                        && ((null == this.ranges)?(null == t.ranges):(this.ranges.equals(t.ranges)))
+                        && Arrays.equals(this.list,t.list));
+            }
+            else
+                return false;
+        }
+        public int compareTo(Term that){
+            if (this.id < that.id)
+                return -1;
+            else if (this.id == that.id)
+                return 0;
+            else
+                return 1;
+        }
+    }
+    /**
+     * Deterministic automaton embedded as terms for its states
+     */
+    final static class Embedded
+        extends Object
+    {
+        final int index;
+
+        final State[] states;
+
+        final Transition[][] transitions;
+
+        final Term[] terms;
+
+
+        Embedded(int index, Automaton a){
+            super();
+            this.index = index;
+            this.states = a.getStateArray();
+            this.transitions = new Transition[this.states.length][];
+            for (int s = 0; s < this.states.length; s++)
+                this.transitions[s] = this.states[s].getSortedTransitionArray(false);
+            this.terms = new Term[this.states.length];
+        }
+    }
+}
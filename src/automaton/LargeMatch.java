@@ -0,0 +1,121 @@
+/*
+ * automaton
+ *
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import jauk.Pattern;
+import jauk.Segmented;
+
+/**
+ * The {@link Match} driver over {@link jauk.Segmented} input with
+ * long offsets, using {@link Compiled#run(Pattern.Op,Segmented,long)}.
+ * 
+ * @see jauk.LargeScanner
+ * @author John Pritchard
+ */
+public class LargeMatch 
+    extends Object
+{
+
+    public final Pattern.Op op;
+
+    protected final Segmented chars;
+
+    protected final long start;
+
+    protected final long end;
+
+    protected final long lnoX, lnoN;
+
+
+    public LargeMatch(Pattern.Op op, Segmented chars, Compiled automaton, long ofs, long lno) {
+        super();
+        this.op = op;
+        if (null != chars && null != automaton){
+            this.chars = chars;
+
+            final long[] bounds = automaton.run(op,chars,ofs);
+
+            if (null != bounds){
+
+                this.start = bounds[0];
+
+                this.end = (bounds[1]+1);
+
+                this.lnoX = lno;
+
+                this.lnoN = lno + chars.count('\n',this.start,this.end);
+            }
+            else {
+                /*
+                 * No match, empty substring
+                 */
+                this.start = ofs;
+                this.end = ofs;
+                this.lnoX = lno;
+                this.lnoN = lno;
+            }
+        }
+        else
+            throw new IllegalArgumentException();
+    }
+
+
+    public boolean satisfied(){
+        return (this.end > this.start);
+    }
+    public boolean terminal(){
+        return (this.end == this.chars.length());
+    }
+    public long next(){
+        return this.end;
+    }
+    public long start() {
+        return this.start;
+    }
+    public long end() {
+        return this.end;
+    }
+    public String group(){
+        if (this.end > this.start)
+            return this.chars.toString(this.start, this.end);
+        else
+            return null;
+    }
+    public long lnoX(){
+        return this.lnoX;
+    }
+    public long lnoN(){
+        return this.lnoN;
+    }
+    public Segmented buffer(){
+
+        return this.chars;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * automaton
+ *
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+
+/**
+ * Columnar match results: the start (inclusive) and end (exclusive)
+ * offsets of each match in primitive arrays, with optional pattern
+ * numbers and line numbers, for bulk matching without a {@link Match}
+ * or string per match.
+ * 
+ * The arrays returned by {@link #starts()}, {@link #ends()}, {@link
+ * #patterns()} and {@link #lines()} are the storage of the result,
+ * valid from zero to {@link #size()} (exclusive).
+ * 
+ * @see Compiled#findAll(CharSequence,int,Matches)
+ * @see Compiled#split(CharSequence,int,Matches)
+ * @see #FindAll(Compiled[],CharSequence,int,Matches)
+ * @author John Pritchard
+ */
+public class Matches
+    extends Object
+{
+    /**
+     * Find all matches of any of the patterns in turn.  At each
+     * offset the longest match of any pattern is taken, or the first
+     * pattern of the longest matches.  The search continues from the
+     * end of each match, or otherwise from the next offset.
+     * @param patterns Pattern numbers are indeces into this list
+     * @param s Input
+     * @param ofs Start offset in input
+     * @param into Appended, having pattern numbers
+     * @return Argument <code>into</code>
+     */
+    public static Matches FindAll(Compiled[] patterns, CharSequence s, int ofs, Matches into){
+        if (null == into.patterns)
+            throw new IllegalArgumentException("Missing pattern numbers");
+        else {
+            final int count = patterns.length;
+            final int len = s.length();
+            while (ofs < len){
+                int end = -1, pattern = -1;
+                for (int p = 0; p < count; p++){
+                    final int e = patterns[p].runMatch(s,ofs);
+                    if (e > end){
+                        end = e;
+                        pattern = p;
+                    }
+                }
+                if (-1 < end){
+                    into.add(s,ofs,(end+1),pattern);
+                    ofs = (end+1);
+                }
+                else
+                    ofs += 1;
+            }
+            return into;
+        }
+    }
+
+
+    protected int size;
+
+    protected int[] starts, ends, patterns, lines;
+    /*
+     * Line number counted to offset
+     */
+    private int lno = 1, lpos = 0;
+
+
+    /**
+     * Starts and ends
+     */
+    public Matches(){
+        this(false,false);
+    }
+    /**
+     * @param patterns Include pattern numbers
+     * @param lines Include line numbers from one, counting new line
+     * characters
+     */
+    public Matches(boolean patterns, boolean lines){
+        super();
+        this.starts = new int[0x10];
+        this.ends = new int[0x10];
+        this.patterns = (patterns)?(new int[0x10]):(null);
+        this.lines = (lines)?(new int[0x10]):(null);
+    }
+
+
+    public int size(){
+        return this.size;
+    }
+    public boolean isEmpty(){
+        return (0 == this.size);
+    }
+    public int start(int idx){
+        if (idx < this.size)
+            return this.starts[idx];
+        else
+            throw new ArrayIndexOutOfBoundsException(idx);
+    }
+    public int end(int idx){
+        if (idx < this.size)
+            return this.ends[idx];
+        else
+            throw new ArrayIndexOutOfBoundsException(idx);
+    }
+    /**
+     * @return Pattern number of match, or zero without pattern
+     * numbers
+     */
+    public int pattern(int idx){
+        if (idx < this.size)
+            return (null != this.patterns)?(this.patterns[idx]):(0);
+        else
+            throw new ArrayIndexOutOfBoundsException(idx);
+    }
+    /**
+     * @return Line number of the start of the match, or zero without
+     * line numbers
+     */
+    public int line(int idx){
+        if (idx < this.size)
+            return (null != this.lines)?(this.lines[idx]):(0);
+        else
+            throw new ArrayIndexOutOfBoundsException(idx);
+    }
+    /**
+     * @return Storage of start offsets (inclusive)
+     */
+    public int[] starts(){
+        return this.starts;
+    }
+    /**
+     * @return Storage of end offsets (exclusive)
+     */
+    public int[] ends(){
+        return this.ends;
+    }
+    /**
+     * @return Storage of pattern numbers, or null
+     */
+    public int[] patterns(){
+        return this.patterns;
+    }
+    /**
+     * @return Storage of line numbers, or null
+     */
+    public int[] lines(){
+        return this.lines;
+    }
+    /**
+     * @return Substring of match, as {@link Match#group()}
+     */
+    public String group(CharSequence s, int idx){
+        final int start = this.start(idx), end = this.ends[idx];
+        if (end > start)
+            return s.subSequence(start,end).toString();
+        else
+            return null;
+    }
+    /**
+     * Drop all results for reuse with another input.
+     */
+    public Matches clear(){
+        this.size = 0;
+        this.lno = 1;
+        this.lpos = 0;
+        return this;
+    }
+    /**
+     * @param s Input, for line numbers
+     * @param start Offset (inclusive), not less than any previous
+     * start
+     * @param end Offset (exclusive)
+     */
+    protected void add(CharSequence s, int start, int end, int pattern){
+        final int idx = this.size;
+        if (idx == this.starts.length){
+            final int grow = (2*idx);
+            this.starts = Arrays.copyOf(this.starts,grow);
+            this.ends = Arrays.copyOf(this.ends,grow);
+            if (null != this.patterns)
+                this.patterns = Arrays.copyOf(this.patterns,grow);
+            if (null != this.lines)
+                this.lines = Arrays.copyOf(this.lines,grow);
+        }
+        this.starts[idx] = start;
+        this.ends[idx] = end;
+        if (null != this.patterns)
+            this.patterns[idx] = pattern;
+        if (null != this.lines){
+            int lno = this.lno;
+            for (int p = this.lpos; p < start; p++){
+                if ('\n' == s.charAt(p))
+                    lno += 1;
+            }
+            this.lno = lno;
+            this.lpos = start;
+            this.lines[idx] = lno;
+        }
+        this.size = (idx+1);
+    }
+}
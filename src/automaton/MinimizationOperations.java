@@ -33,6 +33,9 @@ import lxl.ArrayList;
 import lxl.List;
 import lxl.Set;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
 /**
  * @author Anders Møller
  */
@@ -53,6 +56,14 @@ public final class MinimizationOperations
                 MinimizeHopcroft(a);
                 a.recomputeHashCode();
                 break;
+            case Automaton.MINIMIZE_VALMARI:
+                MinimizeValmari(a);
+                a.recomputeHashCode();
+                break;
+            case Automaton.MINIMIZE_PARALLEL:
+                MinimizeParallel(a);
+                a.recomputeHashCode();
+                break;
             default:
                 break;
             }
@@ -64,10 +75,9 @@ public final class MinimizationOperations
     public static void MinimizeHuffman(Automaton a) {
         a.determinize();
         a.totalize();
-        Set<State> ss = a.getStates();
-        Transition[][] transitions = new Transition[ss.size()][];
-        State[] states = ss.toArray(State.class);
-        int stateslen = ((null != states)?(states.length):(0));
+        State[] states = a.getStateArray();
+        Transition[][] transitions = new Transition[states.length][];
+        int stateslen = states.length;
         boolean[][] mark = new boolean[stateslen][stateslen];
         List<List<Set<IntPair>>> triggers = new ArrayList<List<Set<IntPair>>>();
         for (int n1 = 0; n1 < stateslen; n1++) {
@@ -142,14 +152,8 @@ public final class MinimizationOperations
 	/*
 	 * Make arrays for numbered states and effective alphabet
 	 */
-        Set<State> ss = a.getStates();
-        State[] states = new State[ss.size()];
-        int number = 0;
-        for (State q : ss) {
-            states[number] = q;
-            q.number = number++;
-        }
         char[] sigma = a.getStartPoints();
+        State[] states = a.getStateArray();
 	/*
 	 * Initialize structure
 	 */
@@ -322,6 +326,326 @@ public final class MinimizationOperations
         a.removeDeadTransitions();
     }
 
+    /**
+     * Minimizes the given automaton in packed form using {@link
+     * #MinimizeValmari(Packed)}.
+     */
+    public static void MinimizeValmari(Automaton a) {
+        a.determinize();
+        a.initial = MinimizeValmari(Packed.From(a)).toAutomaton().initial;
+        a.deterministic = true;
+    }
+
+    /**
+     * Minimizes the given packed automaton using the partition
+     * refinement algorithm of Valmari and Lehtinen.
+     */
+    public static Packed Minimize(Packed a) {
+        return MinimizeValmari(a);
+    }
+    /**
+     * Partition refinement of states (blocks) and of transitions
+     * (cords) after Valmari and Lehtinen, "Efficient minimization of
+     * DFAs with partial transition functions" (2008).  Transitions
+     * are split on the interval start points of the automaton, so
+     * that each has a single label.  Time is O(m log n) and space
+     * O(m) for <i>m</i> split transitions.
+     */
+    public static Packed MinimizeValmari(Packed a) {
+        a = BasicOperations.RemoveDeadTransitions(BasicOperations.Determinize(a));
+        final int nn = a.size;
+        final char[] points = a.getStartPoints();
+        /*
+         * Split transitions into single labels
+         */
+        int mm = 0;
+        for (int t = 0, z = a.getNumberOfTransitions(); t < z; t++){
+            mm += (Label(points,a.max[t]+1) - Label(points,a.min[t]));
+        }
+        final int[] tail = new int[mm];
+        final int[] head = new int[mm];
+        final int[] label = new int[mm];
+        {
+            int m = 0;
+            for (int s = 0; s < nn; s++){
+                for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                    for (int x = Label(points,a.min[t]), y = Label(points,a.max[t]+1); x < y; x++){
+                        tail[m] = s;
+                        head[m] = a.to[t];
+                        label[m] = x;
+                        m += 1;
+                    }
+                }
+            }
+        }
+        /*
+         * Initial partition of states by acceptance
+         */
+        Partition blocks = new Partition(nn);
+        for (int s = a.accept.nextSetBit(0); -1 < s; s = a.accept.nextSetBit(s+1)){
+            blocks.mark(s);
+        }
+        blocks.split();
+        /*
+         * Initial partition of transitions by label
+         */
+        Partition cords = new Partition(mm);
+        if (0 < mm){
+            int[] fill = new int[points.length+1];
+            for (int m = 0; m < mm; m++){
+                fill[label[m]+1] += 1;
+            }
+            for (int x = 0; x < points.length; x++){
+                fill[x+1] += fill[x];
+            }
+            int z = 0;
+            for (int x = 0; x < points.length; x++){
+                if (fill[x] < fill[x+1]){
+                    cords.F[z] = fill[x];
+                    cords.P[z] = fill[x+1];
+                    z += 1;
+                }
+            }
+            cords.z = z;
+            for (int m = 0; m < mm; m++){
+                final int i = fill[label[m]]++;
+                cords.E[i] = m;
+                cords.L[m] = i;
+            }
+            for (int c = 0; c < z; c++){
+                for (int i = cords.F[c]; i < cords.P[c]; i++){
+                    cords.S[cords.E[i]] = c;
+                }
+            }
+        }
+        /*
+         * Incoming transitions by head state
+         */
+        final int[] ioffset = new int[nn+1];
+        final int[] incoming = new int[mm];
+        {
+            for (int m = 0; m < mm; m++){
+                ioffset[head[m]+1] += 1;
+            }
+            for (int s = 0; s < nn; s++){
+                ioffset[s+1] += ioffset[s];
+            }
+            int[] fill = java.util.Arrays.copyOf(ioffset,nn);
+            for (int m = 0; m < mm; m++){
+                incoming[fill[head[m]]++] = m;
+            }
+        }
+        /*
+         * Split blocks by cords and cords by blocks until stable
+         */
+        int b = 1, c = 0;
+        while (c < cords.z){
+            for (int i = cords.F[c]; i < cords.P[c]; i++){
+                blocks.mark(tail[cords.E[i]]);
+            }
+            blocks.split();
+            c += 1;
+            while (b < blocks.z){
+                for (int i = blocks.F[b]; i < blocks.P[b]; i++){
+                    final int s = blocks.E[i];
+                    for (int j = ioffset[s]; j < ioffset[s+1]; j++){
+                        cords.mark(incoming[j]);
+                    }
+                }
+                cords.split();
+                b += 1;
+            }
+        }
+        /*
+         * Make a state for each block from its first state
+         */
+        Packed.Builder builder = new Packed.Builder(blocks.z,a.getNumberOfTransitions());
+        for (int k = 0; k < blocks.z; k++){
+            builder.addState(a.accept.get(blocks.E[blocks.F[k]]));
+        }
+        for (int k = 0; k < blocks.z; k++){
+            final int s = blocks.E[blocks.F[k]];
+            for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                builder.addTransition(k,a.min[t],a.max[t],blocks.S[a.to[t]]);
+            }
+        }
+        return builder.build(blocks.S[a.initial],true);
+    }
+    /**
+     * @param c Character or 0x10000
+     * @return Index of the start point of the interval containing
+     * <code>c</code>, where <code>c</code> is a start point, or the
+     * number of points for 0x10000
+     */
+    private static int Label(char[] points, int c){
+        if (c > Character.MAX_VALUE)
+            return points.length;
+        else
+            return java.util.Arrays.binarySearch(points,(char)c);
+    }
+    /**
+     * Minimizes the given packed automaton using Brzozowski's
+     * algorithm.
+     */
+    public static Packed MinimizeBrzozowski(Packed a) {
+        a = BasicOperations.Determinize(SpecialOperations.ReverseTransitions(a), AcceptStates(a));
+        return BasicOperations.Determinize(SpecialOperations.ReverseTransitions(a), AcceptStates(a));
+    }
+    private static int[] AcceptStates(Packed a) {
+        int[] list = new int[a.accept.cardinality()];
+        for (int s = a.accept.nextSetBit(0), n = 0; -1 < s; s = a.accept.nextSetBit(s+1)){
+            list[n++] = s;
+        }
+        return list;
+    }
+    /**
+     * Minimizes the given automaton in packed form using {@link
+     * #MinimizeParallel(Packed)}.
+     */
+    public static void MinimizeParallel(Automaton a) {
+        a.determinize();
+        a.initial = MinimizeParallel(Packed.From(a)).toAutomaton().initial;
+        a.deterministic = true;
+    }
+    /**
+     * Minimizes the given packed automaton by rounds of Moore
+     * refinement, with the executor of subset construction.
+     * @see BasicOperations#GetExecutor()
+     */
+    public static Packed MinimizeParallel(Packed a) {
+        return MinimizeParallel(a, BasicOperations.GetExecutor());
+    }
+    /**
+     * Partition refinement in rounds after Moore.  In each round the
+     * signature of a state is its block with the intervals of its
+     * transitions to blocks, and states of equal signatures form the
+     * blocks of the next round, until a round splits no block.
+     * 
+     * With an executor, and at least {@link
+     * BasicOperations#ParallelThreshold} states, the signatures of a
+     * round are computed and hashed in parallel ranges of states.
+     * Blocks are numbered on the calling thread in the order of
+     * their first states, so that the result is identical in either
+     * case, and isomorphic to that of {@link
+     * #MinimizeValmari(Packed)}.
+     * 
+     * Time is O(m) per round, for as many rounds as the length of
+     * the longest distinguishing word, as in the deep chains of
+     * bounded repetition.  Refinement is limited to {@link
+     * #Rounds(int)} rounds, after which the automaton is minimized
+     * by {@link #MinimizeValmari(Packed)}, so that time is at most a
+     * constant factor of O(m log n).
+     * 
+     * @param executor Parallel signatures, or null for refinement
+     * on the calling thread
+     */
+    public static Packed MinimizeParallel(Packed a, ExecutorService executor) {
+        a = BasicOperations.RemoveDeadTransitions(BasicOperations.Determinize(a, executor));
+        final int nn = a.size;
+        final Signatures signatures = new Signatures(a);
+        int[] block = new int[nn];
+        int count;
+        {
+            /*
+             * Initial partition by acceptance
+             */
+            final boolean first = a.accept.get(0);
+            count = 1;
+            for (int s = 0; s < nn; s++){
+                if (a.accept.get(s) != first){
+                    block[s] = 1;
+                    count = 2;
+                }
+            }
+        }
+        java.util.List<Signatures> list = null;
+        if (null != executor && BasicOperations.Sequential != executor && BasicOperations.ParallelThreshold <= nn){
+            final int tasks = (4 * Runtime.getRuntime().availableProcessors());
+            final int chunk = Math.max(Signatures.Chunk,((nn + tasks - 1) / tasks));
+            list = new java.util.ArrayList<Signatures>(tasks);
+            for (int from = 0; from < nn; from += chunk){
+                list.add(new Signatures(signatures,from,Math.min(nn,(from + chunk))));
+            }
+        }
+        int[] next = new int[nn];
+        final int limit = Rounds(nn);
+        int rounds = 1;
+        final int[] table = new int[Integer.highestOneBit(Math.max(1,nn)) << 2];
+        final int mask = (table.length-1);
+        while (true){
+            if (null == list)
+                signatures.round(block,0,nn);
+            else {
+                for (Signatures task : list){
+                    task.block = block;
+                }
+                BasicOperations.Invoke(executor,list);
+            }
+            /*
+             * Number the blocks of equal signatures
+             */
+            java.util.Arrays.fill(table,-1);
+            int n = 0;
+            for (int s = 0; s < nn; s++){
+                int h = (signatures.hash[s] & mask);
+                while (true){
+                    final int r = table[h];
+                    if (-1 == r){
+                        table[h] = s;
+                        next[s] = n++;
+                        break;
+                    }
+                    else if (signatures.equals(r,s)){
+                        next[s] = next[r];
+                        break;
+                    }
+                    else
+                        h = ((h+1) & mask);
+                }
+            }
+            int[] swap = block;
+            block = next;
+            next = swap;
+            if (n == count)
+                break;
+            else if (rounds == limit)
+                return MinimizeValmari(a);
+            else {
+                count = n;
+                rounds += 1;
+            }
+        }
+        /*
+         * Make a state for each block from its first state
+         */
+        int[] first = new int[count];
+        java.util.Arrays.fill(first,-1);
+        for (int s = 0; s < nn; s++){
+            if (-1 == first[block[s]])
+                first[block[s]] = s;
+        }
+        Packed.Builder builder = new Packed.Builder(count,a.getNumberOfTransitions());
+        for (int k = 0; k < count; k++){
+            builder.addState(a.accept.get(first[k]));
+        }
+        for (int k = 0; k < count; k++){
+            final int s = first[k];
+            for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                builder.addTransition(k,a.min[t],a.max[t],block[a.to[t]]);
+            }
+        }
+        return builder.build(block[a.initial],true);
+    }
+
+    /**
+     * @return Rounds of Moore refinement of <code>n</code> states
+     * before Valmari: twice the bit length of <code>n</code>, and
+     * at least sixteen
+     */
+    protected static int Rounds(int n){
+        return Math.max(0x10,((0x20 - Integer.numberOfLeadingZeros(n)) << 1));
+    }
+
     private static boolean statesAgree(Transition[][] transitions, boolean[][] mark, int n1, int n2) {
         Transition[] t1 = transitions[n1];
         Transition[] t2 = transitions[n2];
@@ -437,6 +761,102 @@ public final class MinimizationOperations
         }
     }
 
+    /**
+     * Refinable partition of the integers from zero to <i>n</i>
+     * (exclusive).  The elements of set <i>k</i> are found from index
+     * <code>F[k]</code> (inclusive) to <code>P[k]</code> (exclusive)
+     * in <code>E</code>, with the marked elements of the set first.
+     */
+    final static class Partition
+        extends Object
+    {
+        /*
+         * Number of sets
+         */
+        int z;
+        /*
+         * Elements ordered by set, location of element in E, set of
+         * element
+         */
+        final int[] E, L, S;
+        /*
+         * First and past index in E, and number of marked elements,
+         * by set
+         */
+        final int[] F, P, M;
+        /*
+         * Sets having marked elements
+         */
+        final int[] W;
+        int w;
+
+
+        Partition(int n){
+            super();
+            this.E = new int[n];
+            this.L = new int[n];
+            this.S = new int[n];
+            this.F = new int[n+1];
+            this.P = new int[n+1];
+            this.M = new int[n+1];
+            this.W = new int[n+1];
+            for (int i = 0; i < n; i++){
+                this.E[i] = i;
+                this.L[i] = i;
+            }
+            if (0 < n){
+                this.z = 1;
+                this.P[0] = n;
+            }
+        }
+
+
+        void mark(int e){
+            final int s = this.S[e];
+            final int i = this.L[e];
+            final int j = (this.F[s] + this.M[s]);
+            if (i >= j){
+                this.E[i] = this.E[j];
+                this.L[this.E[i]] = i;
+                this.E[j] = e;
+                this.L[e] = j;
+                if (0 == this.M[s]++)
+                    this.W[this.w++] = s;
+            }
+        }
+        /**
+         * Split each set having marked elements into its marked and
+         * unmarked elements, numbering the smaller part as a new set.
+         */
+        void split(){
+            while (0 < this.w){
+                final int s = this.W[--this.w];
+                final int j = (this.F[s] + this.M[s]);
+                if (j == this.P[s]){
+                    this.M[s] = 0;
+                }
+                else {
+                    final int z = this.z++;
+                    if (this.M[s] <= (this.P[s] - j)){
+                        this.F[z] = this.F[s];
+                        this.P[z] = j;
+                        this.F[s] = j;
+                    }
+                    else {
+                        this.P[z] = this.P[s];
+                        this.F[z] = j;
+                        this.P[s] = j;
+                    }
+                    for (int i = this.F[z]; i < this.P[z]; i++){
+                        this.S[this.E[i]] = z;
+                    }
+                    this.M[s] = 0;
+                    this.M[z] = 0;
+                }
+            }
+        }
+    }
+
     static class StateList {
                 
         int size;
@@ -480,4 +900,97 @@ public final class MinimizationOperations
                 next.prev = prev;
         }
     }
+    /**
+     * Signatures of the states of a round of {@link
+     * #MinimizeParallel(Packed,ExecutorService)}.  The signature of
+     * state <i>s</i> is its block followed by (min, max, block)
+     * triples of its transitions, merging adjacent intervals to the
+     * same block, in a region of a shared array sized for its
+     * transitions.  A task computes the signatures of a range of
+     * states, which are disjoint among tasks.
+     */
+    private final static class Signatures
+        extends Object
+        implements Callable<Signatures>
+    {
+        final static int Chunk = 0x100;
+
+        final Packed a;
+
+        final int[] offset, length, hash, signature;
+
+        final int from, to;
+
+        int[] block;
+
+
+        Signatures(Packed a){
+            super();
+            this.a = a;
+            final int nn = a.size;
+            this.offset = new int[nn+1];
+            for (int s = 0; s < nn; s++){
+                this.offset[s+1] = (this.offset[s] + 1 + 3*(a.offset[s+1] - a.offset[s]));
+            }
+            this.length = new int[nn];
+            this.hash = new int[nn];
+            this.signature = new int[this.offset[nn]];
+            this.from = 0;
+            this.to = nn;
+        }
+        Signatures(Signatures shared, int from, int to){
+            super();
+            this.a = shared.a;
+            this.offset = shared.offset;
+            this.length = shared.length;
+            this.hash = shared.hash;
+            this.signature = shared.signature;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        public Signatures call(){
+            this.round(this.block,this.from,this.to);
+            return this;
+        }
+        void round(int[] block, int from, int to){
+            final Packed a = this.a;
+            final int[] signature = this.signature;
+            for (int s = from; s < to; s++){
+                int z = this.offset[s];
+                final int start = z;
+                signature[z++] = block[s];
+                for (int t = a.offset[s], e = a.offset[s+1]; t < e; t++){
+                    final int b = block[a.to[t]];
+                    if (start+1 < z && signature[z-1] == b && signature[z-2]+1 == a.min[t])
+                        signature[z-2] = a.max[t];
+                    else {
+                        signature[z++] = a.min[t];
+                        signature[z++] = a.max[t];
+                        signature[z++] = b;
+                    }
+                }
+                int h = 0;
+                for (int i = start; i < z; i++){
+                    h = (31*h) + signature[i];
+                }
+                this.length[s] = (z - start);
+                this.hash[s] = (h ^ (h >>> 16));
+            }
+        }
+        boolean equals(int s1, int s2){
+            final int len = this.length[s1];
+            if (len != this.length[s2] || this.hash[s1] != this.hash[s2])
+                return false;
+            else {
+                final int[] signature = this.signature;
+                for (int i = this.offset[s1], j = this.offset[s2], z = (i + len); i < z; i++, j++){
+                    if (signature[i] != signature[j])
+                        return false;
+                }
+                return true;
+            }
+        }
+    }
 }
@@ -0,0 +1,406 @@
+/*
+ * automaton
+ * 
+ * Copyright (c) 2001-2011 Anders Moeller
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Struct of arrays automaton representation for construction
+ * operations on large automata.  States are numbered from zero, and
+ * the transitions of state <i>s</i> are found from index
+ * <code>offset[s]</code> (inclusive) to <code>offset[s+1]</code>
+ * (exclusive) in the parallel arrays <code>min</code>,
+ * <code>max</code> and <code>to</code>, ordered by (min, max, to).
+ * Accept states are members of the <code>accept</code> bit set.
+ * 
+ * A packed automaton is immutable: operations produce new packed
+ * automata.
+ * 
+ * @see Automaton#pack()
+ * @see BasicOperations
+ * @see MinimizationOperations
+ * @see SpecialOperations
+ * @author John Pritchard
+ */
+public class Packed
+    extends Object
+{
+
+    protected final int size;
+    protected final int initial;
+    protected final int[] offset;
+    protected final int[] min, max, to;
+    protected final BitSet accept;
+    protected final boolean deterministic;
+
+
+    protected Packed(int size, int initial, int[] offset, int[] min, int[] max, int[] to, BitSet accept, boolean deterministic){
+        super();
+        this.size = size;
+        this.initial = initial;
+        this.offset = offset;
+        this.min = min;
+        this.max = max;
+        this.to = to;
+        this.accept = accept;
+        this.deterministic = deterministic;
+    }
+
+
+    public int getNumberOfStates(){
+        return this.size;
+    }
+    public int getNumberOfTransitions(){
+        return this.offset[this.size];
+    }
+    public int getInitialState(){
+        return this.initial;
+    }
+    public boolean isAccept(int s){
+        return this.accept.get(s);
+    }
+    public boolean isDeterministic(){
+        return this.deterministic;
+    }
+    /**
+     * Performs lookup in transitions, assuming determinism.
+     * @return Destination state, or negative one
+     */
+    public int step(int s, char c){
+        int a = this.offset[s];
+        int b = this.offset[s+1]-1;
+        while (a <= b){
+            int d = (a + b) >>> 1;
+            if (this.min[d] > c)
+                b = d-1;
+            else if (this.max[d] < c)
+                a = d+1;
+            else
+                return this.to[d];
+        }
+        return -1;
+    }
+    /**
+     * @return Sorted interval start points, as in {@link
+     * Automaton#getStartPoints()}
+     */
+    public char[] getStartPoints(){
+        final int count = this.offset[this.size];
+        CharRangeSet.Partition partition = new CharRangeSet.Partition(count);
+        for (int t = 0; t < count; t++)
+            partition.add((char)this.min[t], (char)this.max[t]);
+        return partition.getStartPoints();
+    }
+    /**
+     * Strong hash over the breadth first numbering of states from the
+     * initial state, visiting transitions in order.  For a minimal
+     * deterministic automaton without dead states, as from {@link
+     * MinimizationOperations#Minimize(Packed)}, the numbering is
+     * canonical, and automata with equal languages have the same
+     * fingerprint.
+     */
+    public long fingerprint(){
+        final int size = this.size;
+        int[] number = new int[size];
+        Arrays.fill(number,-1);
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        number[this.initial] = tail;
+        queue[tail++] = this.initial;
+        long h = Mix(size);
+        while (head < tail){
+            final int s = queue[head++];
+            h = Mix(h + (this.accept.get(s)?(1L):(0L)));
+            h = Mix(h + (this.offset[s+1]-this.offset[s]));
+            for (int t = this.offset[s], z = this.offset[s+1]; t < z; t++){
+                final int to = this.to[t];
+                if (-1 == number[to]){
+                    number[to] = tail;
+                    queue[tail++] = to;
+                }
+                h = Mix(h + ((((long)this.min[t]) << 48)|(((long)this.max[t]) << 32)|number[to]));
+            }
+        }
+        return h;
+    }
+    public Automaton toAutomaton(){
+        State[] states = new State[this.size];
+        for (int s = 0; s < this.size; s++){
+            states[s] = new State(this.accept.get(s));
+        }
+        for (int s = 0; s < this.size; s++){
+            State p = states[s];
+            for (int t = this.offset[s], z = this.offset[s+1]; t < z; t++){
+                p.add(new Transition((char)this.min[t], (char)this.max[t], states[this.to[t]]));
+            }
+        }
+        Automaton a = new Automaton(states[this.initial]);
+        a.deterministic = this.deterministic;
+        return a;
+    }
+    public String toString(){
+        StringBuilder b = new StringBuilder();
+        b.append("initial state: ").append(this.initial).append("\n");
+        for (int s = 0; s < this.size; s++){
+            b.append("state ").append(s);
+            if (this.accept.get(s))
+                b.append(" [accept]:\n");
+            else
+                b.append(" [reject]:\n");
+            for (int t = this.offset[s], z = this.offset[s+1]; t < z; t++){
+                b.append("  ");
+                Transition.appendCharString((char)this.min[t], b);
+                if (this.min[t] != this.max[t]) {
+                    b.append("-");
+                    Transition.appendCharString((char)this.max[t], b);
+                }
+                b.append(" -> ").append(this.to[t]).append("\n");
+            }
+        }
+        return b.toString();
+    }
+
+
+    /**
+     * @return Reverse adjacency: the sources of the transitions into
+     * state <i>s</i> are found from index <code>re[0][s]</code>
+     * (inclusive) to <code>re[0][s+1]</code> (exclusive) in
+     * <code>re[1]</code>
+     */
+    protected int[][] incoming(){
+        final int size = this.size;
+        final int count = this.offset[size];
+        int[] offset = new int[size+1];
+        for (int t = 0; t < count; t++){
+            offset[this.to[t]+1] += 1;
+        }
+        for (int s = 0; s < size; s++){
+            offset[s+1] += offset[s];
+        }
+        int[] source = new int[count];
+        int[] fill = Arrays.copyOf(offset,size);
+        for (int s = 0; s < size; s++){
+            for (int t = this.offset[s], z = this.offset[s+1]; t < z; t++){
+                source[fill[this.to[t]]++] = s;
+            }
+        }
+        return new int[][]{offset,source};
+    }
+
+
+    /**
+     * Multiply and xor shift finalizer, after MurmurHash3
+     */
+    protected final static long Mix(long h){
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+    /**
+     * @param a Automaton is not modified
+     */
+    public static Packed From(Automaton a){
+        if (a.isSingleton()){
+            final String singleton = a.singleton;
+            final int len = singleton.length();
+            Builder b = new Builder(len+1,len);
+            for (int s = 0; s < len; s++){
+                b.addState(false);
+            }
+            b.addState(true);
+            for (int s = 0; s < len; s++){
+                char c = singleton.charAt(s);
+                b.addTransition(s,c,c,s+1);
+            }
+            return b.build(0,true);
+        }
+        else {
+            State[] states = a.getStateArray();
+            Builder b = new Builder(states.length,a.getNumberOfTransitions());
+            for (State s : states){
+                b.addState(s.accept);
+            }
+            for (State s : states){
+                for (Transition t : s){
+                    b.addTransition(s.number,t.min,t.max,t.to.number);
+                }
+            }
+            return b.build(a.initial.number,a.deterministic);
+        }
+    }
+
+    /**
+     * Growable transition list, sorted into packed form by {@link
+     * #build(int,boolean)}.  Each transition is stored as its source
+     * state and a sort key in (min, max, to) order.
+     */
+    protected final static class Builder
+        extends Object
+    {
+        protected int size;
+        protected BitSet accept;
+        protected int count;
+        protected int[] source;
+        protected long[] key;
+
+
+        protected Builder(){
+            this(0x10,0x20);
+        }
+        protected Builder(int states, int transitions){
+            super();
+            this.accept = new BitSet(Math.max(1,states));
+            this.source = new int[Math.max(1,transitions)];
+            this.key = new long[this.source.length];
+        }
+
+
+        protected int addState(boolean accept){
+            int s = this.size++;
+            if (accept)
+                this.accept.set(s);
+            return s;
+        }
+        protected Builder setAccept(int s, boolean accept){
+            this.accept.set(s,accept);
+            return this;
+        }
+        protected boolean isAccept(int s){
+            return this.accept.get(s);
+        }
+        protected Builder addTransition(int from, int min, int max, int to){
+            if (this.count == this.source.length){
+                int grow = (2*this.count);
+                this.source = Arrays.copyOf(this.source,grow);
+                this.key = Arrays.copyOf(this.key,grow);
+            }
+            this.source[this.count] = from;
+            this.key[this.count] = Key(min,max,to);
+            this.count += 1;
+            return this;
+        }
+        /**
+         * Copy the transitions of state <code>from</code> in
+         * <code>p</code> to state <code>s</code>, adding
+         * <code>shift</code> to each destination.
+         */
+        protected Builder addTransitions(int s, Packed p, int from, int shift){
+            for (int t = p.offset[from], z = p.offset[from+1]; t < z; t++){
+                this.addTransition(s,p.min[t],p.max[t],(p.to[t]+shift));
+            }
+            return this;
+        }
+        /**
+         * Copy all of the states and transitions of <code>p</code>
+         * @return State number shift for <code>p</code>
+         */
+        protected int addAll(Packed p){
+            final int shift = this.size;
+            for (int s = 0; s < p.size; s++){
+                this.addState(p.accept.get(s));
+            }
+            for (int s = 0; s < p.size; s++){
+                this.addTransitions((s+shift),p,s,shift);
+            }
+            return shift;
+        }
+        /**
+         * Group transitions by source state, sort, and merge
+         * duplicate and adjacent intervals.
+         */
+        protected Packed build(int initial, boolean deterministic){
+            final int size = this.size;
+            final int count = this.count;
+            int[] offset = new int[size+1];
+            for (int t = 0; t < count; t++){
+                offset[this.source[t]+1] += 1;
+            }
+            for (int s = 0; s < size; s++){
+                offset[s+1] += offset[s];
+            }
+            long[] sorted = new long[count];
+            {
+                int[] fill = Arrays.copyOf(offset,size);
+                for (int t = 0; t < count; t++){
+                    sorted[fill[this.source[t]]++] = this.key[t];
+                }
+            }
+            int[] min = new int[count];
+            int[] max = new int[count];
+            int[] to = new int[count];
+            int z = 0;
+            for (int s = 0; s < size; s++){
+                final int a = offset[s], b = offset[s+1];
+                Arrays.sort(sorted,a,b);
+                offset[s] = z;
+                for (int t = a; t < b; t++){
+                    long k = sorted[t];
+                    int kmin = (int)((k >>> 47) & 0xffff);
+                    int kmax = (int)((k >>> 31) & 0xffff);
+                    int kto = (int)(k & 0x7fffffffL);
+                    /*
+                     * Merge with the previous transition for
+                     * overlapping or adjacent intervals to the same
+                     * destination
+                     */
+                    if (offset[s] < z && to[z-1] == kto && kmin <= (max[z-1]+1)){
+                        if (kmax > max[z-1])
+                            max[z-1] = kmax;
+                    }
+                    else {
+                        min[z] = kmin;
+                        max[z] = kmax;
+                        to[z] = kto;
+                        z += 1;
+                    }
+                }
+            }
+            offset[size] = z;
+            if (z < count){
+                min = Arrays.copyOf(min,z);
+                max = Arrays.copyOf(max,z);
+                to = Arrays.copyOf(to,z);
+            }
+            return new Packed(size,initial,offset,min,max,to,(BitSet)this.accept.clone(),deterministic);
+        }
+
+        /**
+         * Non negative, so that signed order is (min, max, to) order
+         */
+        protected final static long Key(int min, int max, int to){
+            return ((((long)min) << 47)|(((long)max) << 31)|to);
+        }
+    }
+}
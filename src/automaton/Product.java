@@ -0,0 +1,366 @@
+/*
+ * automaton
+ * 
+ * Copyright (c) 2001-2011 Anders Moeller
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lazy breadth first exploration of the product of two automata.
+ * A pair of state numbers is packed into a long key for an open
+ * addressing table, and pairs are numbered in order of discovery.
+ * The second automaton is deterministic for {@link #DIFFERENCE},
+ * and both are for {@link #SYMMETRIC}, where a missing transition
+ * leads to the (implicit) dead state numbered negative one.
+ * 
+ * @see BasicOperations#Intersection(Automaton,Automaton)
+ * @see BasicOperations#Minus(Automaton,Automaton)
+ * @see BasicOperations#SubsetCounterexample(Automaton,Automaton)
+ * @author John Pritchard
+ */
+final class Product
+    extends Object
+{
+    /**
+     * Pair accepts when both accept
+     */
+    final static int INTERSECTION = 0;
+    /**
+     * Pair accepts when the first accepts and the second does not
+     */
+    final static int DIFFERENCE = 1;
+    /**
+     * Pair accepts when exactly one accepts
+     */
+    final static int SYMMETRIC = 2;
+
+    private final static Transition[] NONE = new Transition[0];
+
+
+    final int mode;
+
+    final State[] states1, states2;
+
+    final Transition[][] transitions1, transitions2;
+    /*
+     * Pairs by number
+     */
+    int count;
+
+    int[] first, second, parent;
+
+    char[] label;
+
+    final BitSet accept = new BitSet();
+    /*
+     * Pair table, keys are non zero
+     */
+    private long[] keys = new long[0x40];
+
+    private int[] values = new int[0x40];
+    /*
+     * Recorded edges
+     */
+    final boolean record;
+
+    int edges;
+
+    int[] from, to;
+
+    char[] min, max;
+
+
+    /**
+     * @param record Record product transitions for {@link #build()}
+     */
+    Product(Automaton a1, Automaton a2, int mode, boolean record){
+        super();
+        this.mode = mode;
+        this.record = record;
+        this.states1 = a1.getStateArray();
+        this.transitions1 = Sorted(this.states1);
+        this.states2 = a2.getStateArray();
+        this.transitions2 = Sorted(this.states2);
+        this.first = new int[0x20];
+        this.second = new int[0x20];
+        this.parent = new int[0x20];
+        this.label = new char[0x20];
+        if (record){
+            this.from = new int[0x40];
+            this.to = new int[0x40];
+            this.min = new char[0x40];
+            this.max = new char[0x40];
+        }
+        this.add(0,0,-1,Character.MIN_VALUE);
+    }
+
+
+    /**
+     * Explore pairs in breadth first order.
+     * @param stop Return on discovery of the first accepting pair
+     * @return Number of the first accepting pair, or negative one
+     * when none is reachable
+     */
+    int explore(boolean stop){
+        int found = this.accept.nextSetBit(0);
+        if (stop && -1 < found)
+            return found;
+        else {
+            for (int p = 0; p < this.count; p++){
+                final int s1 = this.first[p], s2 = this.second[p];
+                final Transition[] t1 = (-1 < s1)?(this.transitions1[s1]):(NONE);
+                final Transition[] t2 = (-1 < s2)?(this.transitions2[s2]):(NONE);
+                /*
+                 * Overlapping intervals
+                 */
+                for (int n1 = 0, b2 = 0; n1 < t1.length; n1++) {
+                    while (b2 < t2.length && t2[b2].max < t1[n1].min){
+                        b2++;
+                    }
+                    for (int n2 = b2; n2 < t2.length && t1[n1].max >= t2[n2].min; n2++){
+                        if (t2[n2].max >= t1[n1].min) {
+                            char min = t1[n1].min > t2[n2].min ? t1[n1].min : t2[n2].min;
+                            char max = t1[n1].max < t2[n2].max ? t1[n1].max : t2[n2].max;
+                            int q = this.edge(p,min,max,t1[n1].to.number,t2[n2].to.number);
+                            if (stop && this.accept.get(q))
+                                return q;
+                        }
+                    }
+                }
+                /*
+                 * Intervals of one not covered by the other
+                 */
+                if (INTERSECTION != this.mode){
+                    int q = this.uncovered(p,t1,t2,true);
+                    if (stop && -1 < q)
+                        return q;
+                    else if (SYMMETRIC == this.mode){
+                        q = this.uncovered(p,t2,t1,false);
+                        if (stop && -1 < q)
+                            return q;
+                    }
+                }
+            }
+            return this.accept.nextSetBit(0);
+        }
+    }
+    /**
+     * @return Shortest string reaching pair <code>p</code>
+     */
+    String witness(int p){
+        int len = 0;
+        for (int q = p; 0 < q; q = this.parent[q])
+            len += 1;
+        char[] string = new char[len];
+        for (int q = p; 0 < q; q = this.parent[q])
+            string[--len] = this.label[q];
+        return new String(string);
+    }
+    /**
+     * Build the automaton of the explored pairs that are reachable
+     * from the initial pair and from which an accepting pair is
+     * reachable, and the initial pair.
+     */
+    Automaton build(){
+        final int count = this.count;
+        final int edges = this.edges;
+        /*
+         * Co-reachable pairs over reverse edges
+         */
+        int[] offset = new int[count+1];
+        for (int e = 0; e < edges; e++)
+            offset[this.to[e]+1] += 1;
+        for (int p = 0; p < count; p++)
+            offset[p+1] += offset[p];
+        int[] source = new int[edges];
+        int[] fill = Arrays.copyOf(offset,count);
+        for (int e = 0; e < edges; e++)
+            source[fill[this.to[e]]++] = this.from[e];
+        BitSet live = (BitSet)this.accept.clone();
+        int[] worklist = fill;
+        int head = 0, tail = 0;
+        for (int p = live.nextSetBit(0); -1 < p; p = live.nextSetBit(p+1))
+            worklist[tail++] = p;
+        while (head < tail){
+            final int p = worklist[head++];
+            for (int n = offset[p]; n < offset[p+1]; n++){
+                final int q = source[n];
+                if (!live.get(q)){
+                    live.set(q);
+                    worklist[tail++] = q;
+                }
+            }
+        }
+        /*
+         * States for live pairs
+         */
+        State[] states = new State[count];
+        states[0] = new State(this.accept.get(0));
+        for (int p = live.nextSetBit(1); -1 < p; p = live.nextSetBit(p+1))
+            states[p] = new State(this.accept.get(p));
+        for (int e = 0; e < edges; e++){
+            final int p = this.from[e], q = this.to[e];
+            if (live.get(p) && live.get(q))
+                states[p].add(new Transition(this.min[e],this.max[e],states[q]));
+        }
+        return new Automaton(states[0]);
+    }
+
+    /**
+     * Successors over the intervals of <code>ta</code> not covered
+     * by the disjoint intervals of <code>tb</code>, paired with the
+     * dead state.
+     * @return First accepting successor, or negative one
+     */
+    private int uncovered(int p, Transition[] ta, Transition[] tb, boolean left){
+        int found = -1;
+        for (int na = 0, b = 0; na < ta.length; na++){
+            final Transition t = ta[na];
+            while (b < tb.length && tb[b].max < t.min){
+                b++;
+            }
+            int cursor = t.min;
+            for (int nb = b; nb < tb.length && cursor <= t.max && tb[nb].min <= t.max; nb++){
+                if (tb[nb].min > cursor)
+                    found = this.uncovered(p,cursor,(tb[nb].min-1),t.to.number,left,found);
+                cursor = (tb[nb].max+1);
+            }
+            if (cursor <= t.max)
+                found = this.uncovered(p,cursor,t.max,t.to.number,left,found);
+        }
+        return found;
+    }
+    private int uncovered(int p, int min, int max, int s, boolean left, int found){
+        int q;
+        if (left)
+            q = this.edge(p,(char)min,(char)max,s,-1);
+        else
+            q = this.edge(p,(char)min,(char)max,-1,s);
+        if (-1 == found && this.accept.get(q))
+            return q;
+        else
+            return found;
+    }
+    /**
+     * @return Destination pair
+     */
+    private int edge(int p, char min, char max, int s1, int s2){
+        final int q = this.add(s1,s2,p,min);
+        if (this.record){
+            final int e = this.edges++;
+            if (e == this.from.length){
+                final int grow = (2*e);
+                this.from = Arrays.copyOf(this.from,grow);
+                this.to = Arrays.copyOf(this.to,grow);
+                this.min = Arrays.copyOf(this.min,grow);
+                this.max = Arrays.copyOf(this.max,grow);
+            }
+            this.from[e] = p;
+            this.to[e] = q;
+            this.min[e] = min;
+            this.max[e] = max;
+        }
+        return q;
+    }
+    /**
+     * @return Number of existing or new pair
+     */
+    private int add(int s1, int s2, int parent, char label){
+        final long key = ((((long)(s1+1)) << 32)|((s2+1) & 0xffffffffL));
+        int mask = (this.keys.length-1);
+        int slot = Hash(key,mask);
+        for (long k; 0L != (k = this.keys[slot]); slot = ((slot+1) & mask)){
+            if (k == key)
+                return this.values[slot];
+        }
+        final int p = this.count++;
+        if (p == this.first.length){
+            final int grow = (2*p);
+            this.first = Arrays.copyOf(this.first,grow);
+            this.second = Arrays.copyOf(this.second,grow);
+            this.parent = Arrays.copyOf(this.parent,grow);
+            this.label = Arrays.copyOf(this.label,grow);
+        }
+        this.first[p] = s1;
+        this.second[p] = s2;
+        this.parent[p] = parent;
+        this.label[p] = label;
+        if (this.isAccept(s1,s2))
+            this.accept.set(p);
+        this.keys[slot] = key;
+        this.values[slot] = p;
+        if ((2*this.count) > this.keys.length){
+            long[] keys = new long[2*this.keys.length];
+            int[] values = new int[keys.length];
+            mask = (keys.length-1);
+            for (int n = 0; n < this.keys.length; n++){
+                final long k = this.keys[n];
+                if (0L != k){
+                    int x = Hash(k,mask);
+                    while (0L != keys[x])
+                        x = ((x+1) & mask);
+                    keys[x] = k;
+                    values[x] = this.values[n];
+                }
+            }
+            this.keys = keys;
+            this.values = values;
+        }
+        return p;
+    }
+    private boolean isAccept(int s1, int s2){
+        final boolean a1 = (-1 < s1 && this.states1[s1].accept);
+        final boolean a2 = (-1 < s2 && this.states2[s2].accept);
+        switch (this.mode){
+        case INTERSECTION:
+            return (a1 && a2);
+        case DIFFERENCE:
+            return (a1 && (!a2));
+        default:
+            return (a1 != a2);
+        }
+    }
+
+    private static int Hash(long key, int mask){
+        final long h = (key * 0x9E3779B97F4A7C15L);
+        return (((int)(h ^ (h >>> 32))) & mask);
+    }
+    /**
+     * @return Transitions by state number in (min, reverse max, to)
+     * order
+     */
+    private static Transition[][] Sorted(State[] states){
+        Transition[][] transitions = new Transition[states.length][];
+        for (int n = 0; n < states.length; n++)
+            transitions[n] = states[n].getSortedTransitionArray(false);
+        return transitions;
+    }
+}
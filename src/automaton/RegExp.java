@@ -35,6 +35,8 @@ import lxl.List;
 import lxl.Set;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author Anders Møller
@@ -73,6 +75,72 @@ public class RegExp
     public static final int INTERVAL = 0x0020;
     public static final int ALL = 0xffff;
     public static final int NONE = 0x0000;
+    /**
+     * System property <code>automaton.RegExp.Derivatives</code>
+     * selects {@link #toAutomatonByDerivatives(boolean)} for {@link
+     * #toAutomaton(boolean)}.
+     */
+    public final static boolean Derivatives;
+    static {
+        boolean derivatives = false;
+        String config = System.getProperty("automaton.RegExp.Derivatives");
+        if (null != config){
+            derivatives = ("true".equals(config));
+        }
+        Derivatives = derivatives;
+    }
+    /**
+     * System property <code>automaton.RegExp.MinimizeThreshold</code>
+     * is the number of states above which the planner of {@link
+     * #toAutomaton(boolean)} minimizes an intermediate result.
+     */
+    public final static int MinimizeThreshold;
+    static {
+        int threshold = 0x20;
+        String config = System.getProperty("automaton.RegExp.MinimizeThreshold");
+        if (null != config){
+            try {
+                threshold = Integer.parseInt(config);
+            }
+            catch (NumberFormatException exc){
+            }
+        }
+        MinimizeThreshold = threshold;
+    }
+    /**
+     * System property <code>automaton.RegExp.ParallelLeaves</code> is
+     * the least number of operands of a union or concatenation
+     * constructed in parallel, with the executor of subset
+     * construction.  Default 0x20.
+     * @see BasicOperations#GetExecutor()
+     */
+    public final static int ParallelLeaves;
+    static {
+        int leaves = 0x20;
+        String config = System.getProperty("automaton.RegExp.ParallelLeaves");
+        if (null != config){
+            try {
+                leaves = Math.max(2,Integer.parseInt(config));
+            }
+            catch (NumberFormatException exc){
+            }
+        }
+        ParallelLeaves = leaves;
+    }
+    /**
+     * System property <code>automaton.RegExp.Simplification</code>
+     * set to <code>false</code> retains the expression tree as parsed,
+     * without the rewriting of {@link #Simplify(RegExp)}.
+     */
+    public final static boolean Simplification;
+    static {
+        boolean simplification = true;
+        String config = System.getProperty("automaton.RegExp.Simplification");
+        if (null != config){
+            simplification = (!"false".equals(config));
+        }
+        Simplification = simplification;
+    }
 
     /*
      * Provoke initialization 
@@ -95,6 +163,8 @@ public class RegExp
     private Context context;
     private Compiled compiled;
 	private boolean minimize;
+    private Profile profile;
+    private Key key;
 
 
     public RegExp(String s){
@@ -119,6 +189,8 @@ public class RegExp
                 e = parseUnionExp();
                 if (this.more())
                     throw new IllegalArgumentException("end-of-string expected at position " + pos);
+                else if (Simplification)
+                    e = Simplify(e);
             }
             this.kind = e.kind;
             this.exp1 = e.exp1;
@@ -130,6 +202,7 @@ public class RegExp
             this.digits = e.digits;
             this.from = e.from;
             this.to = e.to;
+            this.key = e.key;
         }
     }
     /**
@@ -143,15 +216,62 @@ public class RegExp
 
 
     public Compiled compile(){
-        if (null == this.compiled)
-            this.compiled = new Compiled(this.toAutomaton(),this.compileForTime());
-
+        if (null == this.compiled){
+            Automaton a = this.toAutomaton();
+            long start = System.nanoTime();
+            this.compiled = new Compiled(a,this.compileForTime());
+            if (null != this.profile)
+                this.profile.compile = (System.nanoTime()-start);
+        }
         return this.compiled;
     }
     public boolean matches(CharSequence string){
 
 	return this.match(string).satisfied();
     }
+    /**
+     * @see Compiled#matchAll(CharSequence[])
+     */
+    public java.util.BitSet matchAll(CharSequence[] inputs){
+
+        return this.compile().matchAll(inputs);
+    }
+    /**
+     * @see Compiled#matchEnds(CharSequence[])
+     */
+    public int[] matchEnds(CharSequence[] inputs){
+
+        return this.compile().matchEnds(inputs);
+    }
+    /**
+     * @see Compiled#findAll(CharSequence,int,Matches)
+     */
+    public Matches findAll(CharSequence s){
+
+        return this.compile().findAll(s);
+    }
+    public Matches findAll(CharSequence s, int offset, Matches into){
+
+        return this.compile().findAll(s, offset, into);
+    }
+    /**
+     * @see Compiled#count(CharSequence,int)
+     */
+    public int count(CharSequence s){
+
+        return this.compile().count(s, 0);
+    }
+    /**
+     * @see Compiled#split(CharSequence,int,Matches)
+     */
+    public Matches split(CharSequence s){
+
+        return this.compile().split(s);
+    }
+    public Matches split(CharSequence s, int offset, Matches into){
+
+        return this.compile().split(s, offset, into);
+    }
     public Match match(CharSequence s)  {
 
         return new Match(Op.Match, s, this.compile());
@@ -176,59 +296,247 @@ public class RegExp
 
         return new Match(Op.Search, s, this.compile(), offset, lno);
     }
+    public LargeMatch match(jauk.Segmented s, long offset, long lno)  {
+
+        return this.compile().match(s, offset, lno);
+    }
+    public LargeMatch search(jauk.Segmented s, long offset, long lno)  {
+
+        return this.compile().search(s, offset, lno);
+    }
     public Automaton toAutomaton(){
         return toAutomaton(this.minimize);
     }
+    /**
+     * Construct the automaton for this expression, minimizing
+     * intermediate results only where the planner expects it to pay:
+     * before complement, intersection and counted repetition, and
+     * above {@link #MinimizeThreshold} states.  Subset construction
+     * is parallel with the executor of the context.
+     * @param minimize Minimize the result
+     * @see NamedAutomata.Basic#setExecutor(java.util.concurrent.ExecutorService)
+     * @see #getProfile()
+     */
     public Automaton toAutomaton(boolean minimize){
         if (null == this.automaton){
 
+            if (Derivatives){
+                Profile profile = new Profile();
+                long start = System.nanoTime();
+                this.automaton = DerivativeOperations.Build(this, minimize);
+                profile.construct = (System.nanoTime()-start);
+                profile.states = this.automaton.getNumberOfStates();
+                this.profile = profile;
+                return this.automaton;
+            }
+            else {
+                /*
+                 * Subset construction by the executor of the context
+                 */
+                final NamedAutomata.Basic shared = this.getShared();
+                final ExecutorService executor = ((null != shared)?(shared.getExecutor()):(null));
+                final ExecutorService previous = ((null != executor)?(BasicOperations.SetExecutor(executor)):(null));
+                try {
+                    Profile profile = new Profile();
+                    long start = System.nanoTime();
+                    Automaton a = this.toAutomaton(profile, minimize);
+                    if (a.isFrozen()){
+                        /*
+                         * Shared result
+                         */
+                        a = a.clone();
+                        if (!this.isComposite())
+                            Plan(a, profile, minimize);
+                        this.automaton = a;
+                    }
+                    profile.construct = (System.nanoTime()-start-profile.minimize);
+                    profile.states = a.getNumberOfStates();
+                    this.profile = profile;
+                    return a;
+                }
+                finally {
+                    if (null != executor)
+                        BasicOperations.SetExecutor(previous);
+                }
+            }
+        }
+        else
+            return this.automaton;
+    }
+    /**
+     * @return Compile time by phase for the automaton of this
+     * expression, or null before its construction
+     */
+    public Profile getProfile(){
+        return this.profile;
+    }
+    /**
+     * The automata of subexpressions are shared by structure within
+     * the context, frozen, when minimized.
+     * @param minimize Required by the consumer of the result
+     */
+    private Automaton toAutomaton(Profile profile, boolean minimize){
+        if (null == this.automaton){
+            NamedAutomata.Basic shared = null;
+            Key key = null;
+            if (this.isComposite() && null != (shared = this.getShared())){
+                key = this.key();
+                Automaton a = shared.getExpression(key);
+                if (null != a){
+                    profile.shared += 1;
+                    return (this.automaton = a);
+                }
+            }
+            Automaton a;
+            boolean minimal = false;
             switch (this.kind) {
             case REGEXP_UNION:{
-                List<Automaton> list = new ArrayList<Automaton>();
-                FindLeaves(exp1, Kind.REGEXP_UNION, list, minimize);
-                FindLeaves(exp2, Kind.REGEXP_UNION, list, minimize);
-                return (this.automaton =  BasicOperations.Union(list).minimize());
+                Operands alternatives = new Operands();
+                FindOperands(exp1, Kind.REGEXP_UNION, alternatives);
+                FindOperands(exp2, Kind.REGEXP_UNION, alternatives);
+                a = Union(alternatives, profile);
+                /*
+                 * Deterministic from literal alternatives only
+                 */
+                minimal = a.isDeterministic();
+                break;
             }
             case REGEXP_CONCATENATION:{
-                List<Automaton> list = new ArrayList<Automaton>();
-                FindLeaves(exp1, Kind.REGEXP_CONCATENATION, list, minimize);
-                FindLeaves(exp2, Kind.REGEXP_CONCATENATION, list, minimize);
-                return (this.automaton =  BasicOperations.Concatenate(list).minimize());
+                Operands operands = new Operands();
+                FindOperands(exp1, Kind.REGEXP_CONCATENATION, operands);
+                FindOperands(exp2, Kind.REGEXP_CONCATENATION, operands);
+                a = BasicOperations.Concatenate(new ArrayList<Automaton>(Leaves(operands.list, operands.size, profile)));
+                break;
             }
             case REGEXP_INTERSECTION:
-                return (this.automaton =  exp1.toAutomaton(minimize).intersection(exp2.toAutomaton(minimize)).minimize());
+                a = exp1.toAutomaton(profile, true).intersection(exp2.toAutomaton(profile, true));
+                break;
             case REGEXP_OPTIONAL:
-                return (this.automaton =  exp1.toAutomaton(minimize).optional().minimize());
+                a = exp1.toAutomaton(profile, false).optional();
+                break;
             case REGEXP_REPEAT:
-                return (this.automaton =  exp1.toAutomaton(minimize).repeat().minimize());
+                a = exp1.toAutomaton(profile, true).repeat();
+                break;
             case REGEXP_REPEAT_MIN:
-                return (this.automaton =  exp1.toAutomaton(minimize).repeat(min).minimize());
+                a = exp1.toAutomaton(profile, true).repeat(min);
+                break;
             case REGEXP_REPEAT_MINMAX:
-                return (this.automaton =  exp1.toAutomaton(minimize).repeat(min, max).minimize());
+                a = exp1.toAutomaton(profile, true).repeat(min, max);
+                break;
             case REGEXP_COMPLEMENT:
-                return (this.automaton =  exp1.toAutomaton(minimize).complement().minimize());
+                a = exp1.toAutomaton(profile, true).complement();
+                break;
             case REGEXP_CHAR:
-                return (this.automaton =  BasicAutomata.MakeChar(c));
+                a = BasicAutomata.MakeChar(c);
+                break;
             case REGEXP_CHAR_RANGE:
-                return (this.automaton =  BasicAutomata.MakeCharRange(from, to));
+                a = BasicAutomata.MakeCharRange(from, to);
+                break;
             case REGEXP_ANYCHAR:
-                return (this.automaton =  BasicAutomata.MakeAnyChar());
+                a = BasicAutomata.MakeAnyChar();
+                break;
             case REGEXP_EMPTY:
-                return (this.automaton =  BasicAutomata.MakeEmpty(true));
+                a = BasicAutomata.MakeEmpty(true);
+                break;
             case REGEXP_STRING:
-                return (this.automaton =  BasicAutomata.MakeString(s));
+                a = BasicAutomata.MakeString(s);
+                break;
             case REGEXP_ANYSTRING:
-                return (this.automaton =  BasicAutomata.MakeAnyString());
+                a = BasicAutomata.MakeAnyString();
+                break;
             case REGEXP_AUTOMATON:
-                return (this.automaton =  this.getAutomaton(s).clone());
+                a = this.getAutomaton(s);
+                if (!a.isFrozen())
+                    a = a.clone();
+                break;
             case REGEXP_INTERVAL:
-                return (this.automaton =  BasicAutomata.MakeInterval(min, max, digits));
+                a = BasicAutomata.MakeInterval(min, max, digits);
+                break;
             default:
                 throw new Error(this.kind.name());
             }
+            this.automaton = a;
+            if ((minimal || Plan(a, profile, minimize)) && null != key)
+                shared.putExpression(key, a.freeze());
+            return a;
         }
-        else
+        else {
+            Plan(this.automaton, profile, minimize);
             return this.automaton;
+        }
+    }
+    private boolean isComposite(){
+        switch (this.kind) {
+        case REGEXP_UNION:
+        case REGEXP_CONCATENATION:
+        case REGEXP_INTERSECTION:
+        case REGEXP_OPTIONAL:
+        case REGEXP_REPEAT:
+        case REGEXP_REPEAT_MIN:
+        case REGEXP_REPEAT_MINMAX:
+        case REGEXP_COMPLEMENT:
+            return true;
+        default:
+            return false;
+        }
+    }
+    /**
+     * @return Context sharing subexpression automata, or null
+     */
+    private NamedAutomata.Basic getShared(){
+        if (null == this.context)
+            return (NamedAutomata.Basic)NamedAutomata.Builtin.Instance;
+        else if (this.context instanceof NamedAutomata.Basic)
+            return (NamedAutomata.Basic)this.context;
+        else
+            return null;
+    }
+    /**
+     * Construct a deterministic automaton directly from this
+     * expression, without intermediate automata for subexpressions.
+     * @see DerivativeOperations
+     */
+    public Automaton toAutomatonByDerivatives(boolean minimize){
+
+        return DerivativeOperations.Build(this, minimize);
+    }
+    protected DerivativeOperations.Term toTerm(DerivativeOperations ops){
+        switch (this.kind) {
+        case REGEXP_UNION:
+            return ops.union(exp1.toTerm(ops), exp2.toTerm(ops));
+        case REGEXP_CONCATENATION:
+            return ops.concatenation(exp1.toTerm(ops), exp2.toTerm(ops));
+        case REGEXP_INTERSECTION:
+            return ops.intersection(exp1.toTerm(ops), exp2.toTerm(ops));
+        case REGEXP_OPTIONAL:
+            return ops.union(ops.epsilon, exp1.toTerm(ops));
+        case REGEXP_REPEAT:
+            return ops.repeat(exp1.toTerm(ops));
+        case REGEXP_REPEAT_MIN:
+            return ops.repeat(exp1.toTerm(ops), min, -1);
+        case REGEXP_REPEAT_MINMAX:
+            return ops.repeat(exp1.toTerm(ops), min, max);
+        case REGEXP_COMPLEMENT:
+            return ops.complement(exp1.toTerm(ops));
+        case REGEXP_CHAR:
+            return ops.set(c, c);
+        case REGEXP_CHAR_RANGE:
+            return ops.set(from, to);
+        case REGEXP_ANYCHAR:
+            return ops.set(Character.MIN_VALUE, Character.MAX_VALUE);
+        case REGEXP_EMPTY:
+            return ops.epsilon;
+        case REGEXP_STRING:
+            return ops.string(s);
+        case REGEXP_ANYSTRING:
+            return ops.any;
+        case REGEXP_AUTOMATON:
+            return ops.automaton(this.getAutomaton(s));
+        case REGEXP_INTERVAL:
+            return ops.automaton(BasicAutomata.MakeInterval(min, max, digits));
+        default:
+            throw new Error(this.kind.name());
+        }
     }
     /**
      * @see Context
@@ -257,6 +565,20 @@ public class RegExp
         else 
             return NamedAutomata.Builtin.Instance.getAutomaton(name);
     }
+    /**
+     * @return Interned structural key, made once from the keys of
+     * the operands
+     */
+    protected Key key(){
+        Key key = this.key;
+        if (null == key){
+            Key k1 = (null != this.exp1)?(this.exp1.key()):(null);
+            Key k2 = (null != this.exp2)?(this.exp2.key()):(null);
+            key = Key.Intern(new Key(this, k1, k2));
+            this.key = key;
+        }
+        return key;
+    }
     public String toString() {
         return toStringBuilder(new StringBuilder()).toString();
     }
@@ -372,22 +694,47 @@ public class RegExp
     private boolean check(int flag) {
         return (flags & flag) != 0;
     }
+    /**
+     * The operands of union, intersection and concatenation are
+     * parsed iteratively, and assembled into balanced trees, so that
+     * very long alternations and sequences are limited by neither
+     * the parser's stack nor the stack of the operations over the
+     * expression tree.
+     */
     protected final RegExp parseUnionExp() throws IllegalArgumentException {
         RegExp e = parseInterExp();
-        if (match('|'))
-            e = MakeUnion(e, parseUnionExp());
+        if (match('|')){
+            Operands list = new Operands(e);
+            do {
+                list.add(parseInterExp());
+            }
+            while (match('|'));
+            e = MakeUnion(list);
+        }
         return e;
     }
     protected final RegExp parseInterExp() throws IllegalArgumentException {
         RegExp e = parseConcatExp();
-        if (check(INTERSECTION) && match('&'))
-            e = MakeIntersection(e, parseInterExp());
+        if (check(INTERSECTION) && match('&')){
+            Operands list = new Operands(e);
+            do {
+                list.add(parseConcatExp());
+            }
+            while (match('&'));
+            e = MakeIntersection(list);
+        }
         return e;
     }
     protected final RegExp parseConcatExp() throws IllegalArgumentException {
         RegExp e = parseRepeatExp();
-        if (more() && !peek(")|") && (!check(INTERSECTION) || !peek("&")))
-            e = MakeConcatenation(e, parseConcatExp());
+        if (more() && !peek(")|") && (!check(INTERSECTION) || !peek("&"))){
+            Operands list = new Operands(e);
+            do {
+                list.add(parseRepeatExp());
+            }
+            while (more() && !peek(")|") && (!check(INTERSECTION) || !peek("&")));
+            e = MakeConcatenation(list);
+        }
         return e;
     }
     protected final RegExp parseRepeatExp() throws IllegalArgumentException {
@@ -451,8 +798,14 @@ public class RegExp
     }
     protected final RegExp parseCharClasses() throws IllegalArgumentException {
         RegExp e = parseCharClass();
-        while (more() && !peek("]"))
-            e = MakeUnion(e, parseCharClass());
+        if (more() && !peek("]")){
+            Operands list = new Operands(e);
+            do {
+                list.add(parseCharClass());
+            }
+            while (more() && !peek("]"));
+            e = MakeUnion(list);
+        }
         return e;
     }
     protected final RegExp parseCharClass() throws IllegalArgumentException {
@@ -544,14 +897,286 @@ public class RegExp
         return next();
     }
 
-    private static void FindLeaves(RegExp exp, Kind kind, List<Automaton> list, boolean minimize)
+    private static void FindOperands(RegExp exp, Kind kind, Operands list)
     {
         if (exp.kind == kind) {
-            FindLeaves(exp.exp1, kind, list, minimize);
-            FindLeaves(exp.exp2, kind, list, minimize);
+            FindOperands(exp.exp1, kind, list);
+            FindOperands(exp.exp2, kind, list);
         }
 	else
-            list.add(exp.toAutomaton(minimize));
+            list.add(exp);
+    }
+    /**
+     * Literal alternatives are not constructed one by one for a union
+     * of their automata.  Strings are built in one pass into a
+     * minimal deterministic automaton by {@link
+     * StringUnionOperations}, and characters and character ranges
+     * into a single two state character class.  The remaining
+     * alternatives are constructed as usual.
+     */
+    private static Automaton Union(Operands alternatives, Profile profile){
+        String[] strings = new String[0x10];
+        int stringsLen = 0;
+        RegExp[] others = new RegExp[0x10];
+        int othersLen = 0;
+        char[] ranges = new char[0x10];
+        int rangesLen = 0;
+        boolean empty = false, range = false;
+        for (int cc = 0; cc < alternatives.size; cc++){
+            RegExp exp = alternatives.list[cc];
+            switch (exp.kind){
+            case REGEXP_STRING:
+                if (0 == exp.s.length())
+                    empty = true;
+                else {
+                    if (stringsLen == strings.length)
+                        strings = Arrays.copyOf(strings,(2*stringsLen));
+                    strings[stringsLen++] = exp.s;
+                }
+                break;
+            case REGEXP_EMPTY:
+                empty = true;
+                break;
+            case REGEXP_CHAR:
+            case REGEXP_CHAR_RANGE:
+            case REGEXP_ANYCHAR:
+                if (rangesLen == ranges.length)
+                    ranges = Arrays.copyOf(ranges,(2*rangesLen));
+                if (exp.kind == Kind.REGEXP_CHAR){
+                    ranges[rangesLen++] = exp.c;
+                    ranges[rangesLen++] = exp.c;
+                }
+                else if (exp.kind == Kind.REGEXP_CHAR_RANGE){
+                    if (exp.from <= exp.to){
+                        ranges[rangesLen++] = exp.from;
+                        ranges[rangesLen++] = exp.to;
+                        range = true;
+                    }
+                }
+                else {
+                    ranges[rangesLen++] = Character.MIN_VALUE;
+                    ranges[rangesLen++] = Character.MAX_VALUE;
+                    range = true;
+                }
+                break;
+            default:
+                if (othersLen == others.length)
+                    others = Arrays.copyOf(others,(2*othersLen));
+                others[othersLen++] = exp;
+                break;
+            }
+        }
+        Automaton[] list = Leaves(others, othersLen, profile);
+        int listLen = othersLen;
+        if (!range && 0 != stringsLen && 0 != rangesLen){
+            /*
+             * Characters are strings of one
+             */
+            if ((stringsLen + (rangesLen>>1)) > strings.length)
+                strings = Arrays.copyOf(strings,(stringsLen + (rangesLen>>1)));
+            for (int cc = 0; cc < rangesLen; cc += 2)
+                strings[stringsLen++] = String.valueOf(ranges[cc]);
+            rangesLen = 0;
+        }
+        Automaton literals = null;
+        if (0 != rangesLen)
+            literals = BasicAutomata.MakeCharSet(CharRangeSet.Of(ranges, rangesLen));
+        if (0 != stringsLen){
+            if (null != literals){
+                list = Arrays.copyOf(list,(listLen+1));
+                list[listLen++] = literals;
+            }
+            literals = Strings(strings, stringsLen);
+        }
+        if (empty){
+            if (null != literals)
+                /*
+                 * The initial state of either has no inbound
+                 * transitions
+                 */
+                literals.getInitialState().setAccept(true);
+            else
+                literals = BasicAutomata.MakeEmpty(true);
+        }
+        if (0 == listLen)
+            return literals;
+        else {
+            if (null != literals){
+                if (listLen == list.length)
+                    list = Arrays.copyOf(list,(listLen+1));
+                list[listLen++] = literals;
+            }
+            if (1 == listLen)
+                return list[0];
+            else
+                return Combine(list, listLen, profile);
+        }
+    }
+    /**
+     * @param exps Operands of a union or concatenation
+     * @param len Number of operands
+     * @return Their automata, constructed in parallel by the
+     * executor of subset construction when there are at least
+     * {@link #ParallelLeaves}
+     */
+    private static Automaton[] Leaves(RegExp[] exps, int len, Profile profile){
+        Automaton[] leaves = new Automaton[len];
+        final ExecutorService executor = BasicOperations.GetExecutor();
+        if (null == executor || len < ParallelLeaves){
+            for (int cc = 0; cc < len; cc++)
+                leaves[cc] = exps[cc].toAutomaton(profile, false);
+        }
+        else {
+            java.util.List<Task> tasks = new java.util.ArrayList<Task>(len);
+            for (int cc = 0; cc < len; cc++)
+                tasks.add(new Task(exps[cc]));
+            Invoke(executor, tasks, leaves, profile);
+        }
+        return leaves;
+    }
+    /**
+     * Union of alternatives.  With the executor of subset
+     * construction and at least {@link #ParallelLeaves} alternatives,
+     * the union is a balanced tree of minimal unions whose levels are
+     * parallel, so that intermediate automata remain small.
+     * Otherwise it is the flat union, which is the faster sequential
+     * construction.
+     * @param list Two or more automata, overwritten
+     */
+    private static Automaton Combine(Automaton[] list, int len, Profile profile){
+        final ExecutorService executor = BasicOperations.GetExecutor();
+        if (null == executor || len < ParallelLeaves)
+            return BasicOperations.Union(new ArrayList<Automaton>(Arrays.copyOf(list,len)));
+        else {
+            while (1 < len){
+                final int pairs = (len>>1);
+                if (len < ParallelLeaves){
+                    for (int cc = 0; cc < pairs; cc++)
+                        list[cc] = MinimalUnion(list[2*cc], list[(2*cc)+1], profile);
+                }
+                else {
+                    java.util.List<Task> tasks = new java.util.ArrayList<Task>(pairs);
+                    for (int cc = 0; cc < pairs; cc++)
+                        tasks.add(new Task(list[2*cc], list[(2*cc)+1]));
+                    Invoke(executor, tasks, list, profile);
+                }
+                if (1 == (len & 1))
+                    list[pairs] = list[len-1];
+                len = (pairs + (len & 1));
+            }
+            return list[0];
+        }
+    }
+    private static Automaton MinimalUnion(Automaton a1, Automaton a2, Profile profile){
+        Automaton a = BasicOperations.Union(a1, a2);
+        Plan(a, profile, true);
+        return a;
+    }
+    /**
+     * Run the tasks, storing their results in order.
+     */
+    private static void Invoke(ExecutorService executor, java.util.List<Task> tasks, Automaton[] results, Profile profile){
+        try {
+            int cc = 0;
+            for (java.util.concurrent.Future<Automaton> f : executor.invokeAll(tasks)){
+                results[cc++] = f.get();
+            }
+            for (Task task : tasks)
+                profile.add(task.profile);
+        }
+        catch (InterruptedException exc){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted construction",exc);
+        }
+        catch (java.util.concurrent.ExecutionException exc){
+            Throwable t = exc.getCause();
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            else if (t instanceof Error)
+                throw (Error)t;
+            else
+                throw new IllegalStateException(t);
+        }
+    }
+    /**
+     * @param strings Non empty strings, sorted in place.  The natural
+     * order of strings is the lexicographic order of {@link
+     * StringUnionOperations}.
+     * @param len Length of strings
+     * @return Minimal deterministic automaton
+     */
+    private static Automaton Strings(String[] strings, int len){
+        Arrays.sort(strings, 0, len);
+        int count = 1;
+        for (int cc = 1; cc < len; cc++){
+            if (!strings[cc].equals(strings[count-1]))
+                strings[count++] = strings[cc];
+        }
+        return new Automaton(StringUnionOperations.build(Arrays.copyOf(strings,count)));
+    }
+    /**
+     * Minimize when required, or when large.  Singletons and shared
+     * (frozen) automata are left alone.  For the default
+     * minimization, automata of more than sixteen states or of more
+     * than sixty four transitions (as the wide alphabets of Unicode
+     * classes) are minimized with the array based algorithm, which
+     * avoids the per state and per letter overhead of Hopcroft's.
+     * With the executor of subset construction, automata of {@link
+     * BasicOperations#ParallelThreshold} states are minimized in
+     * parallel rounds.
+     * @return Minimized
+     */
+    private static boolean Plan(Automaton a, Profile profile, boolean minimize){
+        if (a.isSingleton() || a.isFrozen())
+            return false;
+        else {
+            final int states = a.getNumberOfStates();
+            if (2 == states && IsCharSet(a))
+                return true;
+            else if (minimize || MinimizeThreshold < states){
+                long start = System.nanoTime();
+                if (Automaton.MINIMIZE_HOPCROFT == a.minimization &&
+                    BasicOperations.ParallelThreshold <= states &&
+                    null != BasicOperations.GetExecutor())
+                {
+                    MinimizationOperations.MinimizeParallel(a);
+                    a.recomputeHashCode();
+                }
+                else if (Automaton.MINIMIZE_HOPCROFT == a.minimization &&
+                    (0x10 < states || 0x40 < a.getNumberOfTransitions()))
+                {
+                    MinimizationOperations.MinimizeValmari(a);
+                    a.recomputeHashCode();
+                }
+                else
+                    a.minimize();
+                profile.minimize += (System.nanoTime()-start);
+                profile.minimizations += 1;
+                return true;
+            }
+            else
+                return false;
+        }
+    }
+    /**
+     * @return The automaton has the minimal form of a character
+     * class: deterministic transitions from a rejecting initial
+     * state into one accepting state having none.
+     * @see BasicAutomata#MakeCharSet(CharRangeSet)
+     */
+    private static boolean IsCharSet(Automaton a){
+        final State initial = a.initial;
+        if (a.isDeterministic() && !initial.accept && initial.isNotEmpty()){
+            final State accept = initial.first().to;
+            if (accept.accept && accept.isEmpty()){
+                for (Transition t : initial){
+                    if (accept != t.to)
+                        return false;
+                }
+                return true;
+            }
+        }
+        return false;
     }
     protected static RegExp MakeUnion(RegExp exp1, RegExp exp2) {
         RegExp r = new RegExp(exp1);
@@ -560,6 +1185,436 @@ public class RegExp
         r.exp2 = exp2;
         return r;
     }
+    /**
+     * @param list Two or more alternatives
+     * @return Balanced union tree
+     */
+    protected static RegExp MakeUnion(Operands list) {
+        return Balance(Kind.REGEXP_UNION, list.list, 0, list.size);
+    }
+    /**
+     * @param list Two or more operands
+     * @return Balanced intersection tree
+     */
+    protected static RegExp MakeIntersection(Operands list) {
+        return Balance(Kind.REGEXP_INTERSECTION, list.list, 0, list.size);
+    }
+    /**
+     * Adjacent characters and strings are joined into single strings
+     * in one pass, before the remaining operands are assembled.
+     * @param list Two or more operands in sequence
+     * @return Balanced concatenation tree
+     */
+    protected static RegExp MakeConcatenation(Operands list) {
+        Operands joined = new Operands();
+        StringBuilder string = new StringBuilder();
+        RegExp first = null;
+        for (int cc = 0; cc < list.size; cc++){
+            RegExp e = list.list[cc];
+            if (e.kind == Kind.REGEXP_CHAR){
+                if (null == first)
+                    first = e;
+                string.append(e.c);
+            }
+            else if (e.kind == Kind.REGEXP_STRING){
+                if (null == first)
+                    first = e;
+                string.append(e.s);
+            }
+            else {
+                if (null != first){
+                    joined.add(Literal(first, string));
+                    first = null;
+                }
+                joined.add(e);
+            }
+        }
+        if (null != first)
+            joined.add(Literal(first, string));
+
+        if (1 == joined.size)
+            return joined.list[0];
+        else
+            return Balance(Kind.REGEXP_CONCATENATION, joined.list, 0, joined.size);
+    }
+    /**
+     * @param first The first of a run of characters and strings
+     * @param string The run, consumed
+     * @return The first, or the string of the run
+     */
+    private static RegExp Literal(RegExp first, StringBuilder string){
+        RegExp e;
+        if (first.kind == Kind.REGEXP_CHAR && 1 == string.length())
+            e = first;
+        else
+            e = MakeString(first, string.toString());
+        string.setLength(0);
+        return e;
+    }
+    private static RegExp Balance(Kind kind, RegExp[] list, int from, int to){
+        final int count = (to-from);
+        if (1 == count)
+            return list[from];
+        else {
+            final int mid = (from + (count>>1));
+            RegExp exp1 = Balance(kind, list, from, mid);
+            RegExp exp2 = Balance(kind, list, mid, to);
+            RegExp r = new RegExp(exp1);
+            r.kind = kind;
+            r.exp1 = exp1;
+            r.exp2 = exp2;
+            return r;
+        }
+    }
+    /**
+     * Rewrite an expression tree into an equivalent one that is
+     * cheaper to construct.  Nested and adjacent repetitions of one
+     * operand collapse, characters and character ranges among
+     * alternatives merge into disjoint ranges, and duplicate
+     * alternatives are dropped.
+     * 
+     * Common prefixes are not factored out of alternatives.  Strings
+     * share prefixes in the literal union of the planner, and
+     * factoring other alternatives nests unions which the planner
+     * minimizes separately, costing more than the determinization of
+     * the flat union.
+     * 
+     * @return The argument when unchanged
+     */
+    protected static RegExp Simplify(RegExp e){
+        switch (e.kind){
+        case REGEXP_UNION:
+            return SimplifyUnion(e);
+        case REGEXP_CONCATENATION:
+            return SimplifyConcatenation(e);
+        case REGEXP_INTERSECTION:{
+            RegExp exp1 = Simplify(e.exp1);
+            RegExp exp2 = Simplify(e.exp2);
+            if (Same(exp1, exp2))
+                return exp1;
+            else if (exp1 == e.exp1 && exp2 == e.exp2)
+                return e;
+            else
+                return MakeIntersection(exp1, exp2);
+        }
+        case REGEXP_OPTIONAL:
+            return SimplifyOptional(e, Simplify(e.exp1));
+        case REGEXP_REPEAT:
+            return SimplifyRepeat(e, Simplify(e.exp1));
+        case REGEXP_REPEAT_MIN:{
+            RegExp exp = Simplify(e.exp1);
+            if (0 == e.min)
+                return SimplifyRepeat(null, exp);
+            else if (exp.kind == Kind.REGEXP_REPEAT)
+                /*
+                 * (x*){n,} = x*
+                 */
+                return exp;
+            else if (1 == e.min && exp.kind == Kind.REGEXP_OPTIONAL)
+                /*
+                 * (x?)+ = x*
+                 */
+                return SimplifyRepeat(null, exp.exp1);
+            else if (exp == e.exp1)
+                return e;
+            else
+                return MakeRepeat(exp, e.min);
+        }
+        case REGEXP_REPEAT_MINMAX:{
+            RegExp exp = Simplify(e.exp1);
+            if (e.min <= e.max && 0 < e.max){
+                if (1 == e.max){
+                    if (1 == e.min)
+                        return exp;
+                    else
+                        return SimplifyOptional(null, exp);
+                }
+                else if (exp.kind == Kind.REGEXP_REPEAT)
+                    /*
+                     * (x*){n,m} = x*
+                     */
+                    return exp;
+            }
+            if (exp == e.exp1)
+                return e;
+            else
+                return MakeRepeat(exp, e.min, e.max);
+        }
+        case REGEXP_COMPLEMENT:{
+            RegExp exp = Simplify(e.exp1);
+            if (exp.kind == Kind.REGEXP_COMPLEMENT)
+                return exp.exp1;
+            else if (exp == e.exp1)
+                return e;
+            else
+                return MakeComplement(exp);
+        }
+        default:
+            return e;
+        }
+    }
+    /**
+     * @param e Optional expression, or null
+     * @param exp Simplified operand
+     */
+    private static RegExp SimplifyOptional(RegExp e, RegExp exp){
+        switch (exp.kind){
+        case REGEXP_OPTIONAL:
+        case REGEXP_REPEAT:
+            return exp;
+        case REGEXP_REPEAT_MIN:
+            if (1 >= exp.min)
+                /*
+                 * (x+)? = x*
+                 */
+                return SimplifyRepeat(null, exp.exp1);
+            else
+                break;
+        default:
+            if (IsEmptyString(exp))
+                return exp;
+            else
+                break;
+        }
+        if (null != e && exp == e.exp1)
+            return e;
+        else
+            return MakeOptional(exp);
+    }
+    /**
+     * @param e Repeat expression, or null
+     * @param exp Simplified operand
+     */
+    private static RegExp SimplifyRepeat(RegExp e, RegExp exp){
+        switch (exp.kind){
+        case REGEXP_REPEAT:
+            return exp;
+        case REGEXP_OPTIONAL:
+            return SimplifyRepeat(null, exp.exp1);
+        case REGEXP_REPEAT_MIN:
+            if (1 >= exp.min)
+                return SimplifyRepeat(null, exp.exp1);
+            else
+                break;
+        default:
+            if (IsEmptyString(exp))
+                return exp;
+            else
+                break;
+        }
+        if (null != e && exp == e.exp1)
+            return e;
+        else
+            return MakeRepeat(exp);
+    }
+    /**
+     * Empty strings are dropped, and adjacent repetitions of one
+     * operand collapse: <code>x*x*</code>, <code>x*x?</code> and
+     * <code>x?x*</code> to <code>x*</code>.
+     */
+    private static RegExp SimplifyConcatenation(RegExp e){
+        Operands operands = new Operands();
+        FindOperands(e, Kind.REGEXP_CONCATENATION, operands);
+        Operands list = new Operands();
+        boolean changed = false;
+        for (int cc = 0; cc < operands.size; cc++){
+            RegExp exp = Simplify(operands.list[cc]);
+            if (exp != operands.list[cc])
+                changed = true;
+
+            if (IsEmptyString(exp)){
+                changed = true;
+                continue;
+            }
+            else if (0 < list.size){
+                RegExp prev = list.list[list.size-1];
+                if (prev.kind == Kind.REGEXP_REPEAT
+                    && (exp.kind == Kind.REGEXP_REPEAT || exp.kind == Kind.REGEXP_OPTIONAL)
+                    && Same(prev.exp1, exp.exp1))
+                {
+                    changed = true;
+                    continue;
+                }
+                else if (prev.kind == Kind.REGEXP_OPTIONAL
+                         && exp.kind == Kind.REGEXP_REPEAT
+                         && Same(prev.exp1, exp.exp1))
+                {
+                    changed = true;
+                    list.list[list.size-1] = exp;
+                    continue;
+                }
+            }
+            list.add(exp);
+        }
+        if (!changed)
+            return e;
+        else if (0 == list.size)
+            return MakeString(e, "");
+        else if (1 == list.size)
+            return list.list[0];
+        else
+            return MakeConcatenation(list);
+    }
+    /**
+     * Alternatives are flattened and simplified, characters and
+     * character ranges merged, and duplicates dropped.
+     */
+    private static RegExp SimplifyUnion(RegExp e){
+        Operands alternatives = new Operands();
+        FindOperands(e, Kind.REGEXP_UNION, alternatives);
+        boolean changed = false;
+        /*
+         * Simplified alternatives, flattened again
+         */
+        Operands simplified = new Operands();
+        for (int cc = 0; cc < alternatives.size; cc++){
+            RegExp exp = Simplify(alternatives.list[cc]);
+            if (exp != alternatives.list[cc]){
+                changed = true;
+                FindOperands(exp, Kind.REGEXP_UNION, simplified);
+            }
+            else
+                simplified.add(exp);
+        }
+        /*
+         * Characters and ranges
+         */
+        Operands list = new Operands();
+        char[] ranges = new char[0x10];
+        int rangesLen = 0, chars = 0;
+        for (int cc = 0; cc < simplified.size; cc++){
+            RegExp exp = simplified.list[cc];
+            switch (exp.kind){
+            case REGEXP_CHAR:
+            case REGEXP_CHAR_RANGE:
+            case REGEXP_ANYCHAR:
+                if (rangesLen == ranges.length)
+                    ranges = Arrays.copyOf(ranges,(2*rangesLen));
+                if (exp.kind == Kind.REGEXP_CHAR){
+                    ranges[rangesLen++] = exp.c;
+                    ranges[rangesLen++] = exp.c;
+                }
+                else if (exp.kind == Kind.REGEXP_CHAR_RANGE){
+                    if (exp.from > exp.to){
+                        /*
+                         * Empty range
+                         */
+                        list.add(exp);
+                        continue;
+                    }
+                    ranges[rangesLen++] = exp.from;
+                    ranges[rangesLen++] = exp.to;
+                }
+                else {
+                    ranges[rangesLen++] = Character.MIN_VALUE;
+                    ranges[rangesLen++] = Character.MAX_VALUE;
+                }
+                chars += 1;
+                break;
+            default:
+                list.add(exp);
+                break;
+            }
+        }
+        CharRangeSet set = CharRangeSet.Of(ranges, rangesLen);
+        if (set.size() < chars)
+            changed = true;
+        for (int cc = 0, count = set.size(); cc < count; cc++){
+            char from = set.getMin(cc), to = set.getMax(cc);
+            if (from == to)
+                list.add(MakeChar(e, from));
+            else if (Character.MIN_VALUE == from && Character.MAX_VALUE == to)
+                list.add(MakeAnyChar(e));
+            else
+                list.add(MakeCharRange(e, from, to));
+        }
+        if (Unique(list))
+            changed = true;
+
+        if (!changed)
+            return e;
+        else if (1 == list.size)
+            return list.list[0];
+        else
+            return MakeUnion(list);
+    }
+    /**
+     * Drop structurally identical alternatives other than strings,
+     * which are unique in the literal union of the planner.
+     * @return Changed
+     */
+    private static boolean Unique(Operands list){
+        final int size = list.size;
+        int count = 0;
+        for (int cc = 0; cc < size; cc++){
+            if (list.list[cc].kind != Kind.REGEXP_STRING)
+                count += 1;
+        }
+        if (2 > count)
+            return false;
+        else {
+            /*
+             * Interned keys are identical for identical structures
+             */
+            final java.util.IdentityHashMap<Key,Key> seen = new java.util.IdentityHashMap<Key,Key>();
+            int z = 0;
+            for (int cc = 0; cc < size; cc++){
+                RegExp exp = list.list[cc];
+                if (exp.kind != Kind.REGEXP_STRING){
+                    Key key = exp.key();
+                    if (null != seen.put(key,key))
+                        continue;
+                }
+                list.list[z++] = exp;
+            }
+            if (z < size){
+                list.size = z;
+                return true;
+            }
+            else
+                return false;
+        }
+    }
+    private static boolean IsEmptyString(RegExp exp){
+        return (exp.kind == Kind.REGEXP_EMPTY
+                || (exp.kind == Kind.REGEXP_STRING && 0 == exp.s.length()));
+    }
+    /**
+     * @return Structurally identical
+     */
+    private static boolean Same(RegExp a, RegExp b){
+        if (a == b)
+            return true;
+        else if (a.kind != b.kind)
+            return false;
+        else {
+            switch (a.kind){
+            case REGEXP_UNION:
+            case REGEXP_CONCATENATION:
+            case REGEXP_INTERSECTION:
+                return (Same(a.exp1, b.exp1) && Same(a.exp2, b.exp2));
+            case REGEXP_OPTIONAL:
+            case REGEXP_REPEAT:
+            case REGEXP_COMPLEMENT:
+                return Same(a.exp1, b.exp1);
+            case REGEXP_REPEAT_MIN:
+                return (a.min == b.min && Same(a.exp1, b.exp1));
+            case REGEXP_REPEAT_MINMAX:
+                return (a.min == b.min && a.max == b.max && Same(a.exp1, b.exp1));
+            case REGEXP_CHAR:
+                return (a.c == b.c);
+            case REGEXP_CHAR_RANGE:
+                return (a.from == b.from && a.to == b.to);
+            case REGEXP_STRING:
+            case REGEXP_AUTOMATON:
+                return a.s.equals(b.s);
+            case REGEXP_INTERVAL:
+                return (a.min == b.min && a.max == b.max && a.digits == b.digits);
+            default:
+                return true;
+            }
+        }
+    }
     protected static RegExp MakeConcatenation(RegExp exp1, RegExp exp2) {
         if ((exp1.kind == Kind.REGEXP_CHAR || exp1.kind == Kind.REGEXP_STRING) && 
             (exp2.kind == Kind.REGEXP_CHAR || exp2.kind == Kind.REGEXP_STRING))
@@ -690,4 +1745,235 @@ public class RegExp
         r.digits = digits;
         return r;
     }
+
+    /**
+     * Growable array of the operands of an n-ary operation, for the
+     * parser and planner.
+     */
+    protected final static class Operands
+        extends Object
+    {
+        protected RegExp[] list = new RegExp[0x10];
+
+        protected int size;
+
+
+        protected Operands(){
+            super();
+        }
+        protected Operands(RegExp first){
+            super();
+            this.add(first);
+        }
+
+
+        protected void add(RegExp e){
+            if (this.size == this.list.length)
+                this.list = Arrays.copyOf(this.list,(2*this.size));
+            this.list[this.size++] = e;
+        }
+    }
+    /**
+     * Structure of an expression, hash consed: the key of a node is
+     * made from its own fields and the interned keys of its operands,
+     * so that equal structures have one interned key, and operands
+     * compare by identity.  Interned keys are weakly held, for as long
+     * as an expression or the cache of a context refers to them.
+     */
+    protected final static class Key
+        extends Object
+    {
+        private final static java.util.WeakHashMap<Key,java.lang.ref.WeakReference<Key>> Interned = new java.util.WeakHashMap<Key,java.lang.ref.WeakReference<Key>>();
+
+        protected static Key Intern(Key key){
+            synchronized(Interned){
+                java.lang.ref.WeakReference<Key> ref = Interned.get(key);
+                if (null != ref){
+                    Key interned = ref.get();
+                    if (null != interned)
+                        return interned;
+                }
+                Interned.put(key,new java.lang.ref.WeakReference<Key>(key));
+                return key;
+            }
+        }
+
+
+        protected final Kind kind;
+        protected final Key exp1, exp2;
+        protected final String s;
+        protected final int c, from, to, min, max, digits;
+        private final int hash;
+
+
+        protected Key(RegExp e, Key exp1, Key exp2){
+            super();
+            this.kind = e.kind;
+            this.exp1 = exp1;
+            this.exp2 = exp2;
+            String s = null;
+            int c = 0, from = 0, to = 0, min = 0, max = 0, digits = 0;
+            switch (e.kind){
+            case REGEXP_CHAR:
+                c = e.c;
+                break;
+            case REGEXP_CHAR_RANGE:
+                from = e.from;
+                to = e.to;
+                break;
+            case REGEXP_STRING:
+            case REGEXP_AUTOMATON:
+                s = e.s;
+                break;
+            case REGEXP_INTERVAL:
+                digits = e.digits;
+            case REGEXP_REPEAT_MINMAX:
+                max = e.max;
+            case REGEXP_REPEAT_MIN:
+                min = e.min;
+                break;
+            default:
+                break;
+            }
+            this.s = s;
+            this.c = c;
+            this.from = from;
+            this.to = to;
+            this.min = min;
+            this.max = max;
+            this.digits = digits;
+
+            int h = this.kind.ordinal();
+            h = (31*h) + ((null != exp1)?(exp1.hash):(0));
+            h = (31*h) + ((null != exp2)?(exp2.hash):(0));
+            h = (31*h) + ((null != s)?(s.hashCode()):(0));
+            h = (31*h) + c;
+            h = (31*h) + ((from << 16)|to);
+            h = (31*h) + min;
+            h = (31*h) + max;
+            h = (31*h) + digits;
+            this.hash = h;
+        }
+
+
+        public int hashCode(){
+            return this.hash;
+        }
+        public boolean equals(Object that){
+            if (this == that)
+                return true;
+            else if (that instanceof Key){
+                Key k = (Key)that;
+                return (this.hash == k.hash && this.kind == k.kind
+                        && this.exp1 == k.exp1 && this.exp2 == k.exp2
+                        && this.c == k.c && this.from == k.from && this.to == k.to
+                        && this.min == k.min && this.max == k.max && this.digits == k.digits
+                        && ((null == this.s)?(null == k.s):(this.s.equals(k.s))));
+            }
+            else
+                return false;
+        }
+    }
+    /**
+     * Construction of the automaton of an operand, or of the minimal
+     * union of two automata, by a thread of the executor of subset
+     * construction.  The operations of a task are sequential, and its
+     * profile is added to that of the expression.
+     */
+    private final static class Task
+        extends Object
+        implements java.util.concurrent.Callable<Automaton>
+    {
+        final RegExp exp;
+
+        final Automaton a1, a2;
+
+        final Profile profile = new Profile();
+
+
+        Task(RegExp exp){
+            super();
+            this.exp = exp;
+            this.a1 = null;
+            this.a2 = null;
+        }
+        Task(Automaton a1, Automaton a2){
+            super();
+            this.exp = null;
+            this.a1 = a1;
+            this.a2 = a2;
+        }
+
+
+        public Automaton call(){
+            final ExecutorService previous = BasicOperations.SetExecutor(BasicOperations.Sequential);
+            try {
+                if (null != this.exp)
+                    return this.exp.toAutomaton(this.profile, false);
+                else
+                    return MinimalUnion(this.a1, this.a2, this.profile);
+            }
+            finally {
+                BasicOperations.SetExecutor(previous);
+            }
+        }
+    }
+    /**
+     * Compile time by phase in nanoseconds.  Construction time
+     * excludes minimization.
+     */
+    public final static class Profile
+        extends Object
+    {
+        protected long construct, minimize, compile;
+
+        protected int minimizations, shared, states;
+
+
+        protected Profile(){
+            super();
+        }
+
+
+        /**
+         * Add the minimizations and sharing of a task.  The time of
+         * a parallel task overlaps others, and is counted as
+         * construction.
+         */
+        protected void add(Profile p){
+            this.minimizations += p.minimizations;
+            this.shared += p.shared;
+        }
+        public long getConstructTime(){
+            return this.construct;
+        }
+        public long getMinimizeTime(){
+            return this.minimize;
+        }
+        public long getCompileTime(){
+            return this.compile;
+        }
+        public int getMinimizations(){
+            return this.minimizations;
+        }
+        /**
+         * @return Number of subexpression automata found shared in
+         * the context
+         */
+        public int getShared(){
+            return this.shared;
+        }
+        public int getNumberOfStates(){
+            return this.states;
+        }
+        public String toString(){
+            StringBuilder b = new StringBuilder();
+            b.append("construct ").append(this.construct/1000000L).append(" ms, ");
+            b.append("minimize ").append(this.minimize/1000000L).append(" ms (").append(this.minimizations).append("), ");
+            b.append("compile ").append(this.compile/1000000L).append(" ms, ");
+            b.append(this.shared).append(" shared, ");
+            b.append(this.states).append(" states");
+            return b.toString();
+        }
+    }
 }
@@ -45,8 +45,8 @@ public final class ShuffleOperations {
     public static Automaton Shuffle(Automaton a1, Automaton a2) {
         a1.determinize();
         a2.determinize();
-        Transition[][] transitions1 = Automaton.GetSortedTransitions(a1.getStates());
-        Transition[][] transitions2 = Automaton.GetSortedTransitions(a2.getStates());
+        Transition[][] transitions1 = Automaton.GetSortedTransitions(a1.getStateArray());
+        Transition[][] transitions2 = Automaton.GetSortedTransitions(a2.getStateArray());
         Automaton c = new Automaton();
         List<StatePair> worklist = new ArrayList<StatePair>();
         Map<StatePair, StatePair> newstates = new Map<StatePair, StatePair>();
@@ -65,6 +65,44 @@ public final class SpecialOperations {
         a.deterministic = false;
         return accept;
     }
+    /**
+     * @return Nondeterministic automaton accepting the reverse
+     * language of the argument
+     */
+    public static Packed Reverse(Packed a) {
+        Packed.Builder b = new Packed.Builder((a.size + 1),(2 * a.getNumberOfTransitions()));
+        for (int s = 0; s < a.size; s++){
+            b.addState(s == a.initial);
+        }
+        final int n = b.addState(a.accept.get(a.initial));
+        for (int s = 0; s < a.size; s++){
+            for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                final int q = a.to[t];
+                b.addTransition(q,a.min[t],a.max[t],s);
+                if (a.accept.get(q))
+                    b.addTransition(n,a.min[t],a.max[t],s);
+            }
+        }
+        return b.build(n,false);
+    }
+    /**
+     * Reverse transitions, and accept the initial state of the
+     * argument.  The initial states of the reverse language are the
+     * accept states of the argument, as for {@link
+     * BasicOperations#Determinize(Packed,int[])}.
+     */
+    protected static Packed ReverseTransitions(Packed a) {
+        Packed.Builder b = new Packed.Builder(a.size,a.getNumberOfTransitions());
+        for (int s = 0; s < a.size; s++){
+            b.addState(s == a.initial);
+        }
+        for (int s = 0; s < a.size; s++){
+            for (int t = a.offset[s], z = a.offset[s+1]; t < z; t++){
+                b.addTransition(a.to[t],a.min[t],a.max[t],s);
+            }
+        }
+        return b.build(a.initial,false);
+    }
     public static Automaton Overlap(Automaton a1, Automaton a2) {
         Automaton b1 = a1.cloneExpanded();
         b1.determinize();
@@ -165,6 +203,17 @@ public final class SpecialOperations {
             int j = 0;
             for (Character c : ckeys)
                 keys[j++] = c;
+            Arrays.sort(keys);
+            /*
+             * Substitutions as ranges, by key index
+             */
+            CharRangeSet[] values = new CharRangeSet[keys.length];
+            for (j = 0; j < keys.length; j++){
+                StringBuilder value = new StringBuilder();
+                for (Character c : map.get(Character.valueOf(keys[j])))
+                    value.append(c.charValue());
+                values[j] = CharRangeSet.Of(value);
+            }
             a = a.cloneExpandedIfRequired();
             for (State s : a.getStates()) {
                 Set<Transition> st = s.resetTransitions();
@@ -198,8 +247,9 @@ public final class SpecialOperations {
                                 t.min = (char)(m + 1);
                         }
                         else { // found t.min in substitution map
-                            for (Character c : map.get(t.min)){
-                                s.add(new Transition(c, t.to));
+                            CharRangeSet w = values[index];
+                            for (int n = 0, z = w.size(); n < z; n++){
+                                s.add(new Transition(w.getMin(n), w.getMax(n), t.to));
                             }
                             if (t.min + 1 > Character.MAX_VALUE)
                                 break;
@@ -295,19 +345,19 @@ public final class SpecialOperations {
     public static Automaton ProjectChars(Automaton a, Set<Character> chars) {
         Character[] c = chars.toArray(Character.class);
         int clen = ((null != c)?(c.length):(0));
-        char[] cc = new char[clen];
+        StringBuilder cs = new StringBuilder(clen);
         boolean normalchars = false;
         for (int i = 0; i < clen; i++){
             if (c[i] == null)
                 normalchars = true;
             else
-                cc[i] = c[i];
+                cs.append(c[i].charValue());
         }
-        Arrays.sort(cc);
+        CharRangeSet cc = CharRangeSet.Of(cs);
         if (a.isSingleton()) {
             for (int i = 0; i < a.singleton.length(); i++) {
                 char sc = a.singleton.charAt(i);
-                if (!(normalchars && (sc <= '\udfff' || sc >= '\uf900') || Arrays.binarySearch(cc, sc) >= 0))
+                if (!(normalchars && (sc <= '\udfff' || sc >= '\uf900') || cc.contains(sc)))
                     return BasicAutomata.MakeEmpty(false);
             }
             return a.cloneIfRequired();
@@ -320,21 +370,17 @@ public final class SpecialOperations {
                 for (Transition t : s) {
                     boolean addepsilon = false;
                     if (t.min < '\uf900' && t.max > '\udfff') {
-                        int w1 = Arrays.binarySearch(cc, t.min > '\ue000' ? t.min : '\ue000');
-                        if (w1 < 0) {
-                            w1 = -w1 - 1;
-                            addepsilon = true;
-                        }
-                        int w2 = Arrays.binarySearch(cc, t.max < '\uf8ff' ? t.max : '\uf8ff');
-                        if (w2 < 0) {
-                            w2 = -w2 - 2;
+                        /*
+                         * A transition for each range of projected
+                         * characters within the private use area
+                         */
+                        char lo = (t.min > '\ue000' ? t.min : '\ue000');
+                        char hi = (t.max < '\uf8ff' ? t.max : '\uf8ff');
+                        CharRangeSet w = cc.intersection(CharRangeSet.Of(lo, hi));
+                        for (int n = 0, z = w.size(); n < z; n++)
+                            new_transitions.add(new Transition(w.getMin(n), w.getMax(n), t.to));
+                        if (!cc.contains(lo, hi))
                             addepsilon = true;
-                        }
-                        for (int w = w1; w <= w2; w++) {
-                            new_transitions.add(new Transition(cc[w], t.to));
-                            if (w > w1 && cc[w - 1] + 1 != cc[w])
-                                addepsilon = true;
-                        }
                     }
                     if (normalchars) {
                         if (t.min <= '\udfff')
@@ -362,6 +408,37 @@ public final class SpecialOperations {
         else
             return IsFinite(a.initial, new Set<State>(), new Set<State>());
     }
+    /**
+     * @return No cycle is reachable from the initial state
+     */
+    public static boolean IsFinite(Packed a) {
+        final int size = a.size;
+        byte[] color = new byte[size];
+        int[] stack = new int[size];
+        int[] next = new int[size];
+        int sp = 0;
+        stack[sp++] = a.initial;
+        next[a.initial] = a.offset[a.initial];
+        color[a.initial] = 1;
+        while (0 < sp){
+            final int s = stack[sp-1];
+            if (next[s] < a.offset[s+1]){
+                final int q = a.to[next[s]++];
+                if (1 == color[q])
+                    return false;
+                else if (0 == color[q]){
+                    color[q] = 1;
+                    next[q] = a.offset[q];
+                    stack[sp++] = q;
+                }
+            }
+            else {
+                color[s] = 2;
+                sp -= 1;
+            }
+        }
+        return true;
+    }
     private static boolean IsFinite(State s, Set<State> path, Set<State> visited) {
         path.add(s);
         for (Transition t : s){
@@ -36,6 +36,7 @@ import lxl.Set;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** 
  * {@link Automaton} state. 
@@ -49,7 +50,7 @@ public class State
 {
 
 
-    private volatile static int next_id;
+    private final static AtomicInteger NextId = new AtomicInteger();
 
 
 
@@ -62,6 +63,20 @@ public class State
     private Set<Transition> transitions;
         
     public int number;
+    /*
+     * Transitions of a frozen state in (min, reverse max, to) order,
+     * otherwise null
+     */
+    protected char[] frozen_min, frozen_max;
+
+    protected State[] frozen_to;
+
+    protected boolean frozen_disjoint;
+    /*
+     * Count of modifications of any state, for Automaton state
+     * numbering
+     */
+    protected static int Modifications;
         
 
 
@@ -77,7 +92,7 @@ public class State
     }
     public State(String name){
         super();
-        this.id = next_id++;
+        this.id = NextId.getAndIncrement();
         this.transitions = new Set<Transition>();
         if (null == name || 1 > name.length())
             this.name = null;
@@ -100,7 +115,47 @@ public class State
         else
             return String.valueOf(this.number);
     }
+    /**
+     * Copy transitions into sorted arrays for binary search in
+     * {@link #step(char)} (when the transition intervals are
+     * disjoint), after which the state rejects mutation.
+     * @see Automaton#freeze()
+     */
+    protected final State freeze(){
+        if (null == this.frozen_to){
+            Transition[] e = this.getSortedTransitionArray(false);
+            final int len = e.length;
+            char[] min = new char[len];
+            char[] max = new char[len];
+            State[] to = new State[len];
+            boolean disjoint = true;
+            for (int n = 0; n < len; n++){
+                min[n] = e[n].min;
+                max[n] = e[n].max;
+                to[n] = e[n].to;
+                if (0 < n && min[n] <= max[n-1])
+                    disjoint = false;
+            }
+            this.frozen_disjoint = disjoint;
+            this.frozen_min = min;
+            this.frozen_max = max;
+            this.frozen_to = to;
+        }
+        return this;
+    }
+    public final boolean isFrozen(){
+        return (null != this.frozen_to);
+    }
+    /**
+     * @exception java.lang.IllegalStateException For a frozen state
+     */
+    protected final void checkMutable(){
+        if (null != this.frozen_to)
+            throw new IllegalStateException("Frozen state "+this.name());
+    }
     protected final Set<Transition> resetTransitions() {
+        this.checkMutable();
+        Modifications += 1;
         Set<Transition> old = this.transitions;
         this.transitions = new Set<Transition>();
         return old;
@@ -109,10 +164,14 @@ public class State
         return transitions;
     }
     public State addTransition(Transition t){
+        this.checkMutable();
+        Modifications += 1;
         transitions.add(t);
         return this;
     }
     public State setAccept(boolean accept){
+        this.checkMutable();
+        Modifications += 1;
         this.accept = accept;
         return this;
     }
@@ -126,6 +185,21 @@ public class State
      * @see #step(char, Collection)
      */
     public State step(char c) {
+        final State[] to = this.frozen_to;
+        if (null != to && this.frozen_disjoint){
+            final char[] min = this.frozen_min, max = this.frozen_max;
+            int a = 0, b = (to.length-1);
+            while (a <= b){
+                int d = (a + b) >>> 1;
+                if (min[d] > c)
+                    b = d-1;
+                else if (max[d] < c)
+                    a = d+1;
+                else
+                    return to[d];
+            }
+            return null;
+        }
         for (Transition t : transitions){
             if (t.min <= c && c <= t.max){
 
@@ -141,6 +215,15 @@ public class State
      * @see #step(char)
      */
     public void step(char c, Collection<State> dest) {
+        final State[] to = this.frozen_to;
+        if (null != to){
+            final char[] min = this.frozen_min, max = this.frozen_max;
+            for (int n = 0; n < to.length && min[n] <= c; n++){
+                if (c <= max[n])
+                    dest.add(to[n]);
+            }
+            return;
+        }
         for (Transition t : transitions){
             if (t.min <= c && c <= t.max)
                 dest.add(t.to);
@@ -159,6 +242,8 @@ public class State
         return this.transitions.size();
     }
     protected State add(Transition t) {
+        this.checkMutable();
+        Modifications += 1;
 
         this.transitions.add(t);
 
@@ -169,12 +254,16 @@ public class State
         return this.iterator().next();
     }
     protected State set( Set<Transition> transitions){
+        this.checkMutable();
+        Modifications += 1;
 
         this.transitions = transitions;
 
         return this;
     }
     protected State addEpsilon(State to) {
+        this.checkMutable();
+        Modifications += 1;
         if (to.accept)
             this.accept = true;
 
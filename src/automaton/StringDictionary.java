@@ -0,0 +1,466 @@
+/*
+ * automaton
+ * 
+ * Copyright (c) 2001-2011 Anders Moeller
+ * Copyright (c) 2011 John Pritchard
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Minimal deterministic acyclic automaton for a set of strings that
+ * changes by the addition and removal of single strings, after
+ * Daciuk, Mihov, Watson and Watson, "Incremental construction of
+ * minimal acyclic finite-state automata" (2000), and Carrasco and
+ * Forcada, "Incremental construction and maintenance of minimal
+ * finite-state automata" (2002).
+ * 
+ * Each update clones the states shared (by more than one incoming
+ * transition) along the path of its string, changes the path, and
+ * then replaces or registers the path states from its end back to
+ * the root.  The automaton remains minimal after each update.
+ * 
+ * Readers use the immutable {@link Compiled} snapshot from {@link
+ * #compile()}, which is rebuilt from the states on the first call
+ * following an update, and may continue to match with an older
+ * snapshot while updates are in progress.  The rebuild is the whole
+ * table, states by points, for any number of updates since the
+ * previous snapshot.
+ * 
+ * @see StringUnionOperations
+ * @author John Pritchard
+ */
+public class StringDictionary
+    extends Object
+{
+
+    private final Node root = new Node();
+
+    private Node[] register = new Node[0x40];
+
+    private int registered;
+
+    private int size;
+
+    private volatile Compiled compiled;
+
+
+    public StringDictionary(){
+        super();
+    }
+    public StringDictionary(CharSequence[] input){
+        this();
+        for (CharSequence s : input){
+            this.add(s);
+        }
+    }
+
+
+    /**
+     * @return Number of strings
+     */
+    public synchronized int size(){
+        return this.size;
+    }
+    /**
+     * @return Number of states, excluding unreachable states
+     */
+    public synchronized int getNumberOfStates(){
+        return (this.registered + 1);
+    }
+    public synchronized boolean contains(CharSequence s){
+        Node n = this.root;
+        for (int i = 0, len = s.length(); null != n && i < len; i++){
+            n = n.get(s.charAt(i));
+        }
+        return (null != n && n.accept);
+    }
+    /**
+     * @return False for a string already present
+     */
+    public synchronized boolean add(CharSequence s){
+        final int len = s.length();
+        Node[] path = new Node[len+1];
+        int k = this.path(s,path);
+        if (k == len && path[k].accept)
+            return false;
+        else {
+            this.prepare(s,path,k);
+            Node q = path[k];
+            for (int i = k; i < len; i++){
+                Node n = new Node();
+                q.add(s.charAt(i),n);
+                path[i+1] = n;
+                q = n;
+            }
+            q.accept = true;
+            this.replaceOrRegister(s,path,len);
+            this.size += 1;
+            this.compiled = null;
+            return true;
+        }
+    }
+    /**
+     * @return False for a string not present
+     */
+    public synchronized boolean remove(CharSequence s){
+        final int len = s.length();
+        Node[] path = new Node[len+1];
+        int k = this.path(s,path);
+        if (k < len || (!path[k].accept))
+            return false;
+        else {
+            this.prepare(s,path,k);
+            path[k].accept = false;
+            /*
+             * Drop states without strings
+             */
+            while (0 < k && (!path[k].accept) && 0 == path[k].labels.length){
+                path[k-1].remove(s.charAt(k-1));
+                path[k] = null;
+                k -= 1;
+            }
+            this.replaceOrRegister(s,path,k);
+            this.size -= 1;
+            this.compiled = null;
+            return true;
+        }
+    }
+    /**
+     * @return Snapshot for matching, rebuilt in full on the first
+     * call after an update
+     */
+    public Compiled compile(){
+        Compiled compiled = this.compiled;
+        if (null == compiled){
+            synchronized(this){
+                compiled = this.compiled;
+                if (null == compiled){
+                    compiled = this.build();
+                    this.compiled = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+    public synchronized Automaton toAutomaton(){
+        Node[] nodes = this.number();
+        State[] states = new State[nodes.length];
+        for (int n = 0; n < nodes.length; n++){
+            states[n] = new State(nodes[n].accept);
+        }
+        for (int n = 0; n < nodes.length; n++){
+            Node s = nodes[n];
+            for (int i = 0; i < s.labels.length; i++){
+                states[n].add(new Transition(s.labels[i],states[s.targets[i].number]));
+            }
+        }
+        return new Automaton(states[0]);
+    }
+
+    /**
+     * Follow the longest prefix of <code>s</code> present
+     * @return Length of prefix
+     */
+    private int path(CharSequence s, Node[] path){
+        final int len = s.length();
+        path[0] = this.root;
+        int k = 0;
+        for (Node n; k < len && null != (n = path[k].get(s.charAt(k))); k++){
+            path[k+1] = n;
+        }
+        return k;
+    }
+    /**
+     * Unregister the prefix path states that will change, and clone
+     * the remaining prefix path states from the first shared state.
+     */
+    private void prepare(CharSequence s, Node[] path, int k){
+        int i = 1;
+        for (; i <= k && 1 == path[i].references; i++){
+            this.unregister(path[i]);
+        }
+        for (; i <= k; i++){
+            Node clone = path[i].copy();
+            path[i-1].replace(s.charAt(i-1),clone);
+            path[i] = clone;
+        }
+    }
+    /**
+     * Replace each path state with its registered equivalent, or
+     * register it, from the end of the path back to the root.
+     */
+    private void replaceOrRegister(CharSequence s, Node[] path, int k){
+        for (int i = k; 0 < i; i--){
+            final Node n = path[i];
+            final Node r = this.lookup(n);
+            if (null != r){
+                path[i-1].replace(s.charAt(i-1),r);
+                this.release(n);
+            }
+            else
+                this.register(n);
+        }
+    }
+    /**
+     * Drop the transitions of a state no longer referenced
+     */
+    private void release(Node n){
+        for (Node t : n.targets){
+            t.references -= 1;
+            if (0 == t.references){
+                this.unregister(t);
+                this.release(t);
+            }
+        }
+    }
+    private Node lookup(Node n){
+        final int h = n.hashCode();
+        for (Node r = this.register[h & (this.register.length-1)]; null != r; r = r.next){
+            if (h == r.hash && n.equals(r))
+                return r;
+        }
+        return null;
+    }
+    private void register(Node n){
+        if ((4*this.registered) >= (3*this.register.length)){
+            Node[] register = new Node[2*this.register.length];
+            for (Node r : this.register){
+                while (null != r){
+                    Node next = r.next;
+                    int x = (r.hash & (register.length-1));
+                    r.next = register[x];
+                    register[x] = r;
+                    r = next;
+                }
+            }
+            this.register = register;
+        }
+        n.hash = n.hashCode();
+        int x = (n.hash & (this.register.length-1));
+        n.next = this.register[x];
+        this.register[x] = n;
+        n.registered = true;
+        this.registered += 1;
+    }
+    private void unregister(Node n){
+        if (n.registered){
+            int x = (n.hash & (this.register.length-1));
+            Node p = null;
+            for (Node r = this.register[x]; null != r; p = r, r = r.next){
+                if (r == n){
+                    if (null == p)
+                        this.register[x] = r.next;
+                    else
+                        p.next = r.next;
+                    break;
+                }
+            }
+            n.next = null;
+            n.registered = false;
+            this.registered -= 1;
+        }
+    }
+    /**
+     * Number the reachable states in depth first order, from zero
+     * for the root.
+     */
+    private Node[] number(){
+        Node[] nodes = new Node[this.registered + 1];
+        Node[] stack = new Node[nodes.length];
+        int count = 0, sp = 0;
+        this.root.number = count;
+        nodes[count++] = this.root;
+        stack[sp++] = this.root;
+        while (0 < sp){
+            Node s = stack[--sp];
+            for (Node t : s.targets){
+                if (t.number >= count || nodes[t.number] != t){
+                    t.number = count;
+                    nodes[count++] = t;
+                    stack[sp++] = t;
+                }
+            }
+        }
+        return nodes;
+    }
+    private Compiled build(){
+        final Node[] nodes = this.number();
+        final int size = nodes.length;
+        /*
+         * Start points of the single character intervals on labels
+         */
+        BitSet bits = new BitSet(Character.MAX_VALUE+1);
+        bits.set(Character.MIN_VALUE);
+        for (Node s : nodes){
+            for (char c : s.labels){
+                bits.set(c);
+                if (c < Character.MAX_VALUE)
+                    bits.set(c+1);
+            }
+        }
+        char[] points = new char[bits.cardinality()];
+        for (int c = bits.nextSetBit(0), n = 0; -1 < c; c = bits.nextSetBit(c+1)){
+            points[n++] = (char)c;
+        }
+        final int pointslen = points.length;
+        int[] transitions = new int[size * pointslen];
+        Arrays.fill(transitions,-1);
+        State[] accept = new State[size];
+        for (int n = 0; n < size; n++){
+            Node s = nodes[n];
+            accept[n] = new State(s.accept);
+            accept[n].number = n;
+            final int nofs = (n * pointslen);
+            for (int i = 0; i < s.labels.length; i++){
+                transitions[nofs + Arrays.binarySearch(points,s.labels[i])] = s.targets[i].number;
+            }
+        }
+        return new Compiled(0,accept,transitions,points,true);
+    }
+
+
+    /**
+     * State with sorted single character labels
+     */
+    private final static class Node
+        extends Object
+    {
+        private final static char[] NO_LABELS = new char[0];
+        private final static Node[] NO_NODES = new Node[0];
+
+        char[] labels = NO_LABELS;
+
+        Node[] targets = NO_NODES;
+
+        boolean accept;
+        /*
+         * Number of incoming transitions
+         */
+        int references;
+        /*
+         * Register hash and chain, for registered states
+         */
+        int hash;
+
+        Node next;
+
+        boolean registered;
+
+        int number;
+
+
+        Node(){
+            super();
+        }
+
+
+        Node get(char c){
+            final int x = Arrays.binarySearch(this.labels,c);
+            if (-1 < x)
+                return this.targets[x];
+            else
+                return null;
+        }
+        void add(char c, Node n){
+            final int x = -(Arrays.binarySearch(this.labels,c)+1);
+            final int len = this.labels.length;
+            char[] labels = new char[len+1];
+            Node[] targets = new Node[len+1];
+            System.arraycopy(this.labels,0,labels,0,x);
+            System.arraycopy(this.targets,0,targets,0,x);
+            labels[x] = c;
+            targets[x] = n;
+            System.arraycopy(this.labels,x,labels,x+1,len-x);
+            System.arraycopy(this.targets,x,targets,x+1,len-x);
+            this.labels = labels;
+            this.targets = targets;
+            n.references += 1;
+        }
+        void replace(char c, Node n){
+            final int x = Arrays.binarySearch(this.labels,c);
+            this.targets[x].references -= 1;
+            this.targets[x] = n;
+            n.references += 1;
+        }
+        void remove(char c){
+            final int x = Arrays.binarySearch(this.labels,c);
+            final int len = this.labels.length-1;
+            this.targets[x].references -= 1;
+            char[] labels = new char[len];
+            Node[] targets = new Node[len];
+            System.arraycopy(this.labels,0,labels,0,x);
+            System.arraycopy(this.targets,0,targets,0,x);
+            System.arraycopy(this.labels,x+1,labels,x,len-x);
+            System.arraycopy(this.targets,x+1,targets,x,len-x);
+            this.labels = labels;
+            this.targets = targets;
+        }
+        /**
+         * @return Unregistered state with the same transitions
+         */
+        Node copy(){
+            Node n = new Node();
+            n.accept = this.accept;
+            n.labels = this.labels.clone();
+            n.targets = this.targets.clone();
+            for (Node t : n.targets){
+                t.references += 1;
+            }
+            return n;
+        }
+        public int hashCode(){
+            int h = (this.accept)?(1):(0);
+            for (int i = 0; i < this.labels.length; i++){
+                h = (31*h) + this.labels[i];
+                h = (31*h) + System.identityHashCode(this.targets[i]);
+            }
+            return h;
+        }
+        /**
+         * Equivalence of registered right languages, by reference
+         * identity of targets.
+         */
+        public boolean equals(Object tha){
+            if (this == tha)
+                return true;
+            else if (tha instanceof Node){
+                Node that = (Node)tha;
+                if (this.accept == that.accept && Arrays.equals(this.labels,that.labels)){
+                    for (int i = 0; i < this.targets.length; i++){
+                        if (this.targets[i] != that.targets[i])
+                            return false;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package automaton;
 
-import lxl.Map;
-
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -9,6 +7,7 @@ import java.util.Comparator;
  * Operations for building minimal deterministic automata from sets of strings. 
  * The algorithm requires sorted input data, but is very fast (nearly linear with the input size).
  * 
+ * @see StringDictionary
  * @author Dawid Weiss
  */
 final public class StringUnionOperations {
@@ -60,6 +59,11 @@ final public class StringUnionOperations {
          */
         boolean is_final;
 
+        /**
+         * State number, assigned by {@link #Number(State)}.
+         */
+        int number = -1;
+
         /**
          * Returns the target state of a transition leaving this state and labeled
          * with <code>label</code>. If no such transition exists, returns
@@ -236,10 +240,79 @@ final public class StringUnionOperations {
         }
     }
 
+    /**
+     * Open addressing hash set of registered states, by right-language
+     * (state equality).
+     */
+    final static class Register
+        extends Object
+    {
+        private State[] table = new State[0x40];
+
+        private int[] hashes = new int[0x40];
+
+        private int size;
+
+        /**
+         * @return A registered state equal to the argument, or null
+         * after registering the argument
+         */
+        State intern(State s) {
+            final int hash = Hash(s);
+            final int mask = (this.table.length - 1);
+            int index = hash & mask;
+            State t;
+            while (null != (t = this.table[index])) {
+                if (hash == this.hashes[index] && t.equals(s))
+                    return t;
+                else
+                    index = (index + 1) & mask;
+            }
+            this.table[index] = s;
+            this.hashes[index] = hash;
+            if ((this.size += 1) > (this.table.length >> 1))
+                this.grow();
+            return null;
+        }
+        private void grow() {
+            final State[] table = this.table;
+            final int[] hashes = this.hashes;
+            final State[] copier = new State[table.length << 1];
+            final int[] copierHashes = new int[copier.length];
+            final int mask = (copier.length - 1);
+            for (int n = 0; n < table.length; n++) {
+                if (null != table[n]) {
+                    int index = hashes[n] & mask;
+                    while (null != copier[index])
+                        index = (index + 1) & mask;
+                    copier[index] = table[n];
+                    copierHashes[index] = hashes[n];
+                }
+            }
+            this.table = copier;
+            this.hashes = copierHashes;
+        }
+        /**
+         * A positional hash of the state's right-language, consistent
+         * with {@link State#equals(Object)}.
+         */
+        private static int Hash(State s) {
+            int h = s.is_final ? 1 : 0;
+            final char[] labels = s.labels;
+            final State[] states = s.states;
+            for (int i = 0; i < labels.length; i++) {
+                h = (h * 31) + labels[i];
+                h = (h * 31) + System.identityHashCode(states[i]);
+            }
+            h *= 0x9E3779B9;
+            return (h ^ (h >>> 16));
+        }
+    }
+
     /**
      * "register" for state interning.
      */
-    private Map<State, State> register = new Map<State, State>();
+    private Register register = new Register();
 
     /**
      * Root automaton state.
@@ -251,6 +324,11 @@ final public class StringUnionOperations {
      */
     private StringBuilder previous;
 
+    /**
+     * Path of last children in {@link #replaceOrRegister(State)}.
+     */
+    private State[] path = new State[0x10];
+
     /**
      * Add another character sequence to this automaton. The sequence must be
      * lexicographically larger or equal compared to any previous sequences
@@ -295,36 +373,88 @@ final public class StringUnionOperations {
     }
 
     /**
-     * Internal recursive traversal for conversion.
+     * Build a minimal, deterministic automaton from a sorted list of strings.
      */
-    private static automaton.State convert(State s, Map<State, automaton.State> visited) {
-        automaton.State converted = visited.get(s);
-        if (converted != null)
-            return converted;
-
-        converted = new automaton.State();
-        converted.setAccept(s.is_final);
-
-        visited.put(s, converted);
-        int i = 0;
-        char [] labels = s.labels;
-        for (StringUnionOperations.State target : s.states) {
-            converted.addTransition(new Transition(labels[i++], convert(target, visited)));
-        }
+    public static automaton.State build(CharSequence[] input) {
+        final StringUnionOperations builder = new StringUnionOperations(); 
 
-        return converted;
+        for (CharSequence chs : input)
+            builder.add(chs);
+
+        final State[] states = Number(builder.complete());
+        /*
+         * Copy states by number, then transitions
+         */
+        final int count = states.length;
+        final automaton.State[] converted = new automaton.State[count];
+        for (int n = 0; n < count; n++)
+            converted[n] = new automaton.State(states[n].is_final);
+
+        for (int n = 0; n < count; n++) {
+            final State s = states[n];
+            final automaton.State c = converted[n];
+            final char[] labels = s.labels;
+            for (int i = 0; i < labels.length; i++) {
+                c.add(new Transition(labels[i], converted[s.states[i].number]));
+            }
+        }
+        return converted[0];
     }
 
     /**
-     * Build a minimal, deterministic automaton from a sorted list of strings.
+     * Build a minimal, deterministic packed automaton from a sorted
+     * list of strings.
      */
-    public static automaton.State build(CharSequence[] input) {
+    public static Packed buildPacked(CharSequence[] input) {
         final StringUnionOperations builder = new StringUnionOperations(); 
 
         for (CharSequence chs : input)
             builder.add(chs);
 
-        return convert(builder.complete(), new Map<State, automaton.State>());
+        final State[] states = Number(builder.complete());
+
+        Packed.Builder b = new Packed.Builder();
+        for (int n = 0; n < states.length; n++)
+            b.addState(states[n].is_final);
+
+        for (int n = 0; n < states.length; n++) {
+            final State s = states[n];
+            final char[] labels = s.labels;
+            for (int i = 0; i < labels.length; i++) {
+                b.addTransition(n, labels[i], labels[i], s.states[i].number);
+            }
+        }
+        return b.build(0, true);
+    }
+
+    /**
+     * Number states in depth first order from the root, numbered
+     * zero.
+     * 
+     * @return States by number
+     */
+    private static State[] Number(State root) {
+        State[] states = new State[0x10];
+        State[] stack = new State[0x10];
+        int count = 0, sp = 0;
+        root.number = count++;
+        states[root.number] = root;
+        stack[sp++] = root;
+        while (0 < sp) {
+            final State s = stack[--sp];
+            for (State target : s.states) {
+                if (-1 == target.number) {
+                    target.number = count++;
+                    if (target.number == states.length)
+                        states = State.copyOf(states, 2 * states.length);
+                    states[target.number] = target;
+                    if (sp == stack.length)
+                        stack = State.copyOf(stack, 2 * stack.length);
+                    stack[sp++] = target;
+                }
+            }
+        }
+        return State.copyOf(states, count);
     }
 
     /**
@@ -342,19 +472,28 @@ final public class StringUnionOperations {
 
     /**
      * Replace last child of <code>state</code> with an already registered
-     * state or register the last child state.
+     * state or register the last child state, in post-order along the
+     * path of last children.  The path is walked into an array rather
+     * than by recursion, for the depth of a long string.
      */
     private void replaceOrRegister(State state) {
-        final State child = state.lastChild();
+        State[] path = this.path;
+        int depth = 0;
+        for (State s = state; s.hasChildren(); s = s.lastChild()) {
+            if (depth == path.length)
+                path = State.copyOf(path, 2 * path.length);
+            path[depth++] = s;
+        }
+        this.path = path;
 
-        if (child.hasChildren())
-            replaceOrRegister(child);
+        while (0 < depth) {
+            final State parent = path[--depth];
+            path[depth] = null;
 
-        final State registered = register.get(child);
-        if (registered != null) {
-            state.replaceLastChild(registered);
-        } else {
-            register.put(child, child);
+            final State registered = register.intern(parent.lastChild());
+            if (registered != null) {
+                parent.replaceLastChild(registered);
+            }
         }
     }
 
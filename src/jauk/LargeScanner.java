@@ -0,0 +1,164 @@
+/*
+ * Jauk
+ * Copyright (C) 2011 John Pritchard
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package jauk;
+
+import automaton.Compiled;
+import automaton.LargeMatch;
+import automaton.RegExp;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The {@link Scanner} cursor over {@link Segmented} input with long
+ * positions, for input beyond the int range.  In place of the match
+ * history stack, the scanner retains the current and previous
+ * matches, so that memory is constant over the input.
+ * 
+ * @author jdp
+ */
+public class LargeScanner
+    extends Object
+{
+
+    private final Segmented input;
+
+    private LargeMatch current, previous;
+
+    private long position, line = 1L;
+
+
+    public LargeScanner(Segmented input){
+        super();
+        if (null != input)
+            this.input = input;
+        else
+            throw new IllegalArgumentException();
+    }
+    public LargeScanner(File source)
+        throws IOException
+    {
+        this(new Segmented(source));
+    }
+
+
+    public Segmented input(){
+
+        return this.input;
+    }
+    public long length(){
+
+        return this.input.length();
+    }
+    public long position(){
+
+        return this.position;
+    }
+    /**
+     * Return to the position of the previous match, once.
+     */
+    public void revert(){
+
+        this.current = this.previous;
+        this.previous = null;
+        if (null != this.current){
+            this.position = this.current.next();
+            this.line = this.current.lnoN();
+        }
+        else {
+            this.position = 0L;
+            this.line = 1L;
+        }
+    }
+    public String next(RegExp pattern){
+
+        return this.next(pattern.compile());
+    }
+    public String next(Compiled pattern){
+
+        LargeMatch match = this.match(pattern);
+        if (null != match)
+            return match.group();
+        else
+            return null;
+    }
+    public LargeMatch match(RegExp pattern){
+
+        return this.match(pattern.compile());
+    }
+    public LargeMatch match(Compiled pattern){
+
+        return this.push(pattern.match(this.input,this.position,this.line));
+    }
+    public LargeMatch search(RegExp pattern){
+
+        return this.search(pattern.compile());
+    }
+    public LargeMatch search(Compiled pattern){
+
+        return this.push(pattern.search(this.input,this.position,this.line));
+    }
+    public boolean isEmpty(){
+
+        return (this.position >= this.input.length());
+    }
+    public boolean isNotEmpty(){
+
+        return (this.position < this.input.length());
+    }
+    public long previousLine(){
+
+        if (null != this.previous)
+            return this.previous.lnoN();
+        else
+            return 0L;
+    }
+    public String previousCapture(){
+
+        if (null != this.previous)
+            return this.previous.group();
+        else
+            return null;
+    }
+    public long currentLine(){
+
+        return this.line;
+    }
+    public String currentCapture(){
+
+        if (null != this.current)
+            return this.current.group();
+        else
+            return null;
+    }
+
+    private LargeMatch push(LargeMatch match){
+
+        if (match.satisfied()){
+            this.previous = this.current;
+            this.current = match;
+            this.position = match.next();
+            this.line = match.lnoN();
+            return match;
+        }
+        else
+            return null;
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Jauk
+ * Copyright (C) 2011 John Pritchard
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package jauk;
+
+import automaton.Compiled;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tokenize many non blocking channels as their input arrives, with a
+ * selector thread and a fixed pool of workers.  Each channel has a
+ * small state record: the runs of the token patterns at its cursor,
+ * the text of the token in progress, undecoded bytes, and its line
+ * number.  Buffers for reading and decoding belong to the workers,
+ * so the memory of a channel is bytes, and the text of a token in
+ * progress.
+ * 
+ * At each offset the token is the longest match of any pattern, or
+ * the first pattern of the longest matches, as found by {@link
+ * Compiled#runMatch(CharSequence,int)}.  A character matched by no
+ * pattern is a token of pattern negative one.  The tokens of a
+ * channel are delivered to the {@link Handler} in order, by one
+ * worker at a time.
+ * 
+ * @see Scanner
+ * @author jdp
+ */
+public class MultiplexedScanner
+    extends Object
+    implements Closeable
+{
+    /**
+     * Receiver of tokens, called by the workers
+     */
+    public interface Handler {
+        /**
+         * @param pattern Index into the patterns of the scanner, or
+         * negative one for a character matched by no pattern
+         * @param text Token text, valid for the duration of the call
+         * @param offset Offset of the token in the channel, from zero
+         * @param line Line of the start of the token, from one
+         */
+        public void token(SelectableChannel channel, int pattern, CharSequence text, long offset, long line);
+        /**
+         * End of input of the channel, after its last token.  The
+         * channel is closed.
+         * @param failure Null for the end of the input, or the
+         * failure to read it
+         */
+        public void end(SelectableChannel channel, IOException failure);
+    }
+    /**
+     * Worker buffer size in bytes and characters
+     */
+    public final static int BUFFER = 0x2000;
+
+
+    private final Compiled[] patterns;
+
+    private final Charset charset;
+
+    private final Handler handler;
+
+    private final ExecutorService workers;
+
+    private final boolean shutdown;
+
+    private final Selector selector;
+
+    private final ConcurrentLinkedQueue<Session> pending = new ConcurrentLinkedQueue<Session>();
+
+    private final ConcurrentLinkedQueue<Session> resumed = new ConcurrentLinkedQueue<Session>();
+
+    private final ThreadLocal<ByteBuffer> bytes = new ThreadLocal<ByteBuffer>(){
+        protected ByteBuffer initialValue(){
+            return ByteBuffer.allocateDirect(BUFFER);
+        }
+    };
+    private final ThreadLocal<CharBuffer> chars = new ThreadLocal<CharBuffer>(){
+        protected CharBuffer initialValue(){
+            return CharBuffer.allocate(BUFFER);
+        }
+    };
+
+    private final Thread thread;
+
+    private volatile boolean open = true;
+
+
+    /**
+     * @param threads Number of workers
+     */
+    public MultiplexedScanner(Compiled[] patterns, Charset cs, Handler handler, int threads)
+        throws IOException
+    {
+        this(patterns,cs,handler,Executors.newFixedThreadPool(threads, new ThreadFactory(){
+                public Thread newThread(Runnable r){
+                    Thread thread = new Thread(r,"jauk.MultiplexedScanner.Worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }),true);
+    }
+    /**
+     * @param workers Fixed pool of workers, not shut down by {@link
+     * #close()}
+     */
+    public MultiplexedScanner(Compiled[] patterns, Charset cs, Handler handler, ExecutorService workers)
+        throws IOException
+    {
+        this(patterns,cs,handler,workers,false);
+    }
+    private MultiplexedScanner(Compiled[] patterns, Charset cs, Handler handler, ExecutorService workers, boolean shutdown)
+        throws IOException
+    {
+        super();
+        if (null == patterns || 0 == patterns.length || null == cs || null == handler || null == workers)
+            throw new IllegalArgumentException();
+        else {
+            this.patterns = patterns.clone();
+            this.charset = cs;
+            this.handler = handler;
+            this.workers = workers;
+            this.shutdown = shutdown;
+            this.selector = Selector.open();
+            this.thread = new Thread("jauk.MultiplexedScanner"){
+                    public void run(){
+                        MultiplexedScanner.this.select();
+                    }
+                };
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+
+    /**
+     * Scan the channel from its current input.  The channel is made
+     * non blocking.
+     */
+    public <C extends SelectableChannel & ReadableByteChannel> void register(C channel)
+        throws IOException
+    {
+        if (this.open){
+            channel.configureBlocking(false);
+            this.pending.add(new Session(this,channel));
+            this.selector.wakeup();
+        }
+        else
+            throw new IllegalStateException("Closed");
+    }
+    /**
+     * Stop selecting, and shut down a pool of workers created by
+     * the scanner.  Registered channels are not closed.
+     */
+    public void close()
+        throws IOException
+    {
+        this.open = false;
+        this.selector.wakeup();
+        try {
+            this.thread.join();
+        }
+        catch (InterruptedException exc){
+            Thread.currentThread().interrupt();
+        }
+        this.selector.close();
+        if (this.shutdown)
+            this.workers.shutdown();
+    }
+
+    /**
+     * Selector thread: dispatch each ready channel to a worker, with
+     * its interest cleared until the worker is done.
+     */
+    private void select(){
+        try {
+            while (this.open){
+                Session session;
+                while (null != (session = this.pending.poll())){
+                    try {
+                        session.key = session.channel.register(this.selector,SelectionKey.OP_READ,session);
+                    }
+                    catch (IOException exc){
+                        session.end(exc);
+                    }
+                }
+                while (null != (session = this.resumed.poll())){
+                    try {
+                        session.key.interestOps(SelectionKey.OP_READ);
+                    }
+                    catch (CancelledKeyException exc){
+                    }
+                }
+                this.selector.select();
+
+                for (SelectionKey key : this.selector.selectedKeys()){
+                    try {
+                        if (key.isValid()){
+                            key.interestOps(0);
+                            this.workers.execute((Session)key.attachment());
+                        }
+                    }
+                    catch (CancelledKeyException exc){
+                    }
+                }
+                this.selector.selectedKeys().clear();
+            }
+        }
+        catch (ClosedSelectorException exc){
+        }
+        catch (IOException exc){
+            this.open = false;
+        }
+    }
+    /**
+     * Worker done with a channel having more input: restore its
+     * interest on the selector thread
+     */
+    private void resume(Session session){
+
+        this.resumed.add(session);
+        this.selector.wakeup();
+    }
+
+
+    /**
+     * State of a channel
+     */
+    private final static class Session
+        extends Object
+        implements Runnable
+    {
+        final static int Reads = 0x10;
+
+        final MultiplexedScanner scanner;
+
+        final SelectableChannel channel;
+
+        final CharsetDecoder decoder;
+
+        SelectionKey key;
+        /*
+         * Undecoded bytes of a partial character
+         */
+        byte[] remainder;
+        /*
+         * Runs of the patterns from base, reset in place for each
+         * token, and the text from base (while a token is in
+         * progress)
+         */
+        Compiled.Run[] runs;
+
+        StringBuilder text;
+
+        long base, line = 1L;
+
+
+        Session(MultiplexedScanner scanner, SelectableChannel channel){
+            super();
+            this.scanner = scanner;
+            this.channel = channel;
+            this.decoder = scanner.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+
+        /**
+         * Read, decode and scan the available input
+         */
+        public void run(){
+            final ByteBuffer in = this.scanner.bytes.get();
+            final CharBuffer out = this.scanner.chars.get();
+            in.clear();
+            if (null != this.remainder){
+                in.put(this.remainder);
+                this.remainder = null;
+            }
+            try {
+                final ReadableByteChannel source = (ReadableByteChannel)this.channel;
+                /*
+                 * A few reads at a time, so that a busy channel
+                 * shares its worker
+                 */
+                int read = 0;
+                for (int reads = 0; reads < Reads; reads++){
+                    read = source.read(in);
+                    if (0 < in.position()){
+                        in.flip();
+                        while (true){
+                            out.clear();
+                            final boolean overflow = this.decoder.decode(in,out,false).isOverflow();
+                            out.flip();
+                            this.scan(out,false);
+                            if (!overflow)
+                                break;
+                        }
+                        in.compact();
+                    }
+                    if (0 >= read)
+                        break;
+                }
+                if (-1 == read){
+                    in.flip();
+                    while (true){
+                        out.clear();
+                        final boolean overflow = this.decoder.decode(in,out,true).isOverflow();
+                        out.flip();
+                        this.scan(out,false);
+                        if (!overflow)
+                            break;
+                    }
+                    out.clear();
+                    this.decoder.flush(out);
+                    out.flip();
+                    this.scan(out,true);
+
+                    this.end(null);
+                }
+                else {
+                    if (0 < in.position()){
+                        in.flip();
+                        this.remainder = new byte[in.remaining()];
+                        in.get(this.remainder);
+                    }
+                    this.scanner.resume(this);
+                }
+            }
+            catch (IOException exc){
+                this.end(exc);
+            }
+            catch (RuntimeException exc){
+                this.end(new IOException(exc));
+            }
+        }
+        /**
+         * Run the patterns over the input, delivering each token as
+         * it is determined.
+         * @param last End of input
+         */
+        void scan(CharBuffer input, boolean last){
+            final Compiled[] patterns = this.scanner.patterns;
+            final int count = patterns.length;
+            if (null == this.text)
+                this.text = new StringBuilder();
+            this.text.append(input);
+            if (null == this.runs){
+                this.runs = new Compiled.Run[count];
+                for (int p = 0; p < count; p++){
+                    this.runs[p] = new Compiled.Run(patterns[p],this.base);
+                }
+            }
+            /*
+             * Tokens are consumed through the offset of base in the
+             * text, which is compacted once for the chunk
+             */
+            final StringBuilder text = this.text;
+            int ofs = 0;
+            while (ofs < text.length()){
+                final long origin = (this.base - ofs);
+                boolean done = true;
+                for (int p = 0; p < count; p++){
+                    final Compiled.Run run = this.runs[p];
+                    if (!patterns[p].resume(run,text,origin)){
+                        if (last)
+                            run.finish();
+                        else
+                            done = false;
+                    }
+                }
+                if (done){
+                    /*
+                     * Longest match, or a character of no pattern
+                     */
+                    long end = -1L;
+                    int pattern = -1;
+                    for (int p = 0; p < count; p++){
+                        if (this.runs[p].end() > end){
+                            end = this.runs[p].end();
+                            pattern = p;
+                        }
+                    }
+                    final int len = (-1L < end)?((int)(end + 1L - this.base)):(1);
+                    final CharSequence token = text.subSequence(ofs,(ofs + len));
+                    this.scanner.handler.token(this.channel,pattern,token,this.base,this.line);
+                    for (int p = 0; p < len; p++){
+                        if ('\n' == token.charAt(p))
+                            this.line += 1L;
+                    }
+                    ofs += len;
+                    this.base += len;
+                    for (int p = 0; p < count; p++){
+                        this.runs[p].reset(patterns[p],this.base);
+                    }
+                }
+                else
+                    break;
+            }
+            if (ofs == text.length())
+                this.text = null;
+            else if (0 < ofs)
+                text.delete(0,ofs);
+        }
+        /**
+         * Deliver the end, and close the channel
+         */
+        void end(IOException failure){
+            if (null != this.key)
+                this.key.cancel();
+            try {
+                this.channel.close();
+            }
+            catch (IOException ignore){
+            }
+            this.text = null;
+            this.runs = null;
+            this.scanner.handler.end(this.channel,failure);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Jauk
+ * Copyright (C) 2011 John Pritchard
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package jauk;
+
+import automaton.Compiled;
+import automaton.RegExp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A scanner that reads and decodes on a producer thread into a pair
+ * of blocks, while the caller matches the previous block.  A block
+ * is returned to the producer when the cursor leaves it, so the
+ * producer waits for the consumer, and memory is two blocks and the
+ * text of a match in progress across blocks.
+ * 
+ * A match in progress at the end of a block is resumed in the next
+ * block with {@link Compiled#resume}, over the rope of the carried
+ * text of the match and the next block.  The carried text is copied
+ * once from its block, and shared by the ropes of the following
+ * blocks.  A match attempt is limited to {@link #CARRY} blocks of
+ * text from the cursor, where it ends as at the end of input.
+ * Offsets and line numbers are global, from zero and one.
+ * 
+ * @see Scanner
+ * @author jdp
+ */
+public class PipelinedScanner
+    extends Object
+    implements Closeable
+{
+    /**
+     * Default block size in characters
+     */
+    public final static int BLOCK = 0x10000;
+    /**
+     * Limit of a match attempt in blocks
+     */
+    public final static int CARRY = 4;
+
+    private final static CharBuffer End = CharBuffer.allocate(0);
+
+
+    private final BlockingQueue<CharBuffer> free, full;
+
+    private final Producer producer;
+    /*
+     * Window of input available from base: text carried from the
+     * previous blocks, and the current block
+     */
+    private Rope window = new Rope();
+
+    private CharBuffer block;
+    /*
+     * Characters of a match attempt
+     */
+    private final long limit;
+
+    private long base, position, start, line = 1L, previousLine = 1L;
+
+    private boolean eof;
+
+
+    public PipelinedScanner(File source)
+        throws IOException
+    {
+        this(new FileInputStream(source).getChannel(),Scanner.UTF8,BLOCK);
+    }
+    /**
+     * @param source Closed at its end, or by {@link #close()}
+     * @param block Characters per block, at least a surrogate pair
+     */
+    public PipelinedScanner(ReadableByteChannel source, Charset cs, int block){
+        super();
+        if (null == source || null == cs || 2 > block)
+            throw new IllegalArgumentException();
+        else {
+            this.limit = ((long)CARRY * block);
+            this.free = new ArrayBlockingQueue<CharBuffer>(2);
+            this.full = new ArrayBlockingQueue<CharBuffer>(2);
+            this.free.add(CharBuffer.allocate(block));
+            this.free.add(CharBuffer.allocate(block));
+            this.producer = new Producer(source,cs,this.free,this.full);
+            this.producer.start();
+        }
+    }
+
+
+    /**
+     * @return Offset of the cursor
+     */
+    public long position(){
+
+        return this.position;
+    }
+    /**
+     * @return Offset of the last match
+     */
+    public long start(){
+
+        return this.start;
+    }
+    public long currentLine(){
+
+        return this.line;
+    }
+    /**
+     * @return Line of the start of the last match
+     */
+    public long previousLine(){
+
+        return this.previousLine;
+    }
+    public boolean isEmpty()
+        throws IOException
+    {
+        return (!this.available());
+    }
+    public boolean isNotEmpty()
+        throws IOException
+    {
+        return this.available();
+    }
+    public String next(RegExp pattern)
+        throws IOException
+    {
+        return this.next(pattern.compile());
+    }
+    /**
+     * Match the pattern at the cursor, as {@link Scanner#next}, and
+     * advance the cursor over the match.  The match is within
+     * {@link #CARRY} blocks of the cursor.
+     * @return Match text, or null for no match
+     */
+    public String next(Compiled pattern)
+        throws IOException
+    {
+        Compiled.Run run = new Compiled.Run(pattern,this.position);
+
+        while (!pattern.resume(run,this.window,this.base)){
+
+            if (this.limit <= (this.base + this.window.length() - this.position)
+                || (!this.advance()))
+            {
+                run.finish();
+                break;
+            }
+        }
+        final long end = run.end();
+        if (-1L < end){
+            final int from = (int)(this.position - this.base);
+            final int to = (int)(end + 1L - this.base);
+            final String group = this.window.subSequence(from,to).toString();
+            this.previousLine = this.line;
+            for (int p = 0, z = group.length(); p < z; p++){
+                if ('\n' == group.charAt(p))
+                    this.line += 1L;
+            }
+            this.start = this.position;
+            this.position = (end + 1L);
+            return group;
+        }
+        else
+            return null;
+    }
+    /**
+     * Stop the producer and close the source.
+     */
+    public void close()
+        throws IOException
+    {
+        this.eof = true;
+        this.producer.interrupt();
+        this.producer.source.close();
+    }
+
+    /**
+     * @return Input is available at the cursor
+     */
+    private boolean available()
+        throws IOException
+    {
+        while (this.position >= (this.base + this.window.length())){
+            if (!this.advance())
+                return false;
+        }
+        return true;
+    }
+    /**
+     * Carry the text of the window from the cursor, return the
+     * current block to the producer, and take the next block.
+     * @return False at the end of input
+     */
+    private boolean advance()
+        throws IOException
+    {
+        if (this.eof)
+            return false;
+        else {
+            CharBuffer next;
+            try {
+                next = this.full.take();
+            }
+            catch (InterruptedException exc){
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (End == next){
+                this.eof = true;
+                if (null != this.producer.failure)
+                    throw this.producer.failure;
+                else
+                    return false;
+            }
+            else {
+                /*
+                 * The text of a match in progress keeps the carried
+                 * fragments of the window, and a copy of the rest of
+                 * the current block, which is otherwise dropped
+                 */
+                final int from = (int)(this.position - this.base);
+                Rope window = new Rope();
+                if (null != this.block){
+                    final int length = this.window.length();
+                    if (from < length){
+                        final int carried = (length - this.block.limit());
+                        if (from < carried)
+                            window.append(this.window.subSequence(from,carried));
+                        final int skip = (this.block.arrayOffset() + Math.max(0,(from - carried)));
+                        window.append(Arrays.copyOfRange(this.block.array(),skip,(this.block.arrayOffset() + this.block.limit())));
+                    }
+                    this.block.clear();
+                    this.free.add(this.block);
+                }
+                this.block = next;
+                this.window = window.append(next);
+                this.base = this.position;
+                return true;
+            }
+        }
+    }
+    /**
+     * Read and decode into free blocks, until the end of input.
+     */
+    private final static class Producer
+        extends Thread
+    {
+        final ReadableByteChannel source;
+
+        final CharsetDecoder decoder;
+
+        final BlockingQueue<CharBuffer> free, full;
+
+        volatile IOException failure;
+
+
+        Producer(ReadableByteChannel source, Charset cs, BlockingQueue<CharBuffer> free, BlockingQueue<CharBuffer> full){
+            super("jauk.PipelinedScanner");
+            this.setDaemon(true);
+            this.source = source;
+            this.decoder = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.free = free;
+            this.full = full;
+        }
+
+
+        public void run(){
+            try {
+                ByteBuffer in = ByteBuffer.allocateDirect(0x10000);
+                /*
+                 * Reading, end of input, flushing, done
+                 */
+                final int reading = 0, ending = 1, flushing = 2, done = 3;
+                int phase = reading;
+                while (done != phase){
+                    CharBuffer out = this.free.take();
+                    while (true){
+                        if (reading == phase && -1 == this.source.read(in))
+                            phase = ending;
+
+                        if (flushing > phase){
+                            in.flip();
+                            CoderResult cr = this.decoder.decode(in,out,(ending == phase));
+                            in.compact();
+                            if (cr.isOverflow())
+                                break;
+                            else if (ending == phase)
+                                phase = flushing;
+                            else
+                                continue;
+                        }
+                        if (this.decoder.flush(out).isOverflow())
+                            break;
+                        else {
+                            phase = done;
+                            break;
+                        }
+                    }
+                    out.flip();
+                    if (0 < out.limit())
+                        this.full.put(out);
+                    else
+                        this.free.put(out);
+                }
+            }
+            catch (InterruptedException exc){
+                return;
+            }
+            catch (IOException exc){
+                this.failure = exc;
+            }
+            finally {
+                try {
+                    this.source.close();
+                }
+                catch (IOException ignore){
+                }
+            }
+            try {
+                this.full.put(End);
+            }
+            catch (InterruptedException exc){
+            }
+        }
+    }
+}
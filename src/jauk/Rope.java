@@ -0,0 +1,250 @@
+/*
+ * Jauk
+ * Copyright (C) 2011 John Pritchard
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package jauk;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Scatter gather input as a character sequence of fragments, without
+ * flattening.  Fragments are character arrays (including the arrays
+ * of heap buffers) or other character sequences, and are not copied.
+ * Offsets are global, from the first fragment.
+ * 
+ * The run loops of {@link automaton.Compiled} step through each
+ * fragment in turn, over its array where it has one, so that {@link
+ * Pattern} matches of a rope cost no more per character than those
+ * of a string.
+ * 
+ * A rope is appended by one thread, before it is matched.
+ * 
+ * @author jdp
+ */
+public class Rope
+    extends Object
+    implements CharSequence
+{
+
+    private char[][] arrays;
+    /*
+     * Index of fragment in its array
+     */
+    private int[] from;
+
+    private CharSequence[] sequences;
+    /*
+     * Offset of each fragment, and the length
+     */
+    private int[] offsets;
+
+    private int count, length;
+    /*
+     * Fragment of the last access
+     */
+    private int last;
+
+
+    public Rope(){
+        super();
+        this.arrays = new char[0x10][];
+        this.from = new int[0x10];
+        this.sequences = new CharSequence[0x10];
+        this.offsets = new int[0x11];
+    }
+    public Rope(CharSequence... fragments){
+        this();
+        for (CharSequence fragment : fragments){
+            this.append(fragment);
+        }
+    }
+
+
+    public Rope append(char[] fragment){
+
+        return this.append(fragment,0,fragment.length);
+    }
+    public Rope append(char[] fragment, int ofs, int len){
+        if (0 > ofs || 0 > len || fragment.length < (ofs + len))
+            throw new IndexOutOfBoundsException(ofs+":"+len);
+        else
+            return this.add(fragment,ofs,null,len);
+    }
+    /**
+     * @param fragment Characters from the position to the limit of
+     * the buffer, which is not modified
+     */
+    public Rope append(CharBuffer fragment){
+        if (fragment.hasArray())
+            return this.add(fragment.array(),(fragment.arrayOffset() + fragment.position()),null,fragment.remaining());
+        else
+            return this.add(null,0,fragment.slice(),fragment.remaining());
+    }
+    public Rope append(CharSequence fragment){
+        if (fragment instanceof CharBuffer)
+            return this.append((CharBuffer)fragment);
+        else if (fragment instanceof Rope){
+            Rope rope = (Rope)fragment;
+            for (int idx = 0, z = rope.count; idx < z; idx++){
+                this.add(rope.arrays[idx],rope.from[idx],rope.sequences[idx],(rope.offsets[idx+1] - rope.offsets[idx]));
+            }
+            return this;
+        }
+        else
+            return this.add(null,0,fragment,fragment.length());
+    }
+    public int length(){
+        return this.length;
+    }
+    public char charAt(int idx){
+        final int seg = this.segment(idx);
+        if (seg == this.count)
+            throw new IndexOutOfBoundsException(String.valueOf(idx));
+        final int ofs = (idx - this.offsets[seg]);
+        final char[] array = this.arrays[seg];
+        if (null != array)
+            return array[this.from[seg] + ofs];
+        else
+            return this.sequences[seg].charAt(ofs);
+    }
+    /**
+     * @return Rope of the fragments of the range, without copying
+     */
+    public CharSequence subSequence(int start, int end){
+        if (0 > start || end > this.length || end < start)
+            throw new IndexOutOfBoundsException(start+":"+end);
+        else {
+            Rope sub = new Rope();
+            for (int seg = this.segment(start); start < end; seg++){
+                final int base = this.offsets[seg];
+                final int a = (start - base);
+                final int b = (Math.min(end,this.offsets[seg+1]) - base);
+                if (null != this.arrays[seg])
+                    sub.add(this.arrays[seg],(this.from[seg] + a),null,(b - a));
+                else
+                    sub.add(null,0,this.sequences[seg].subSequence(a,b),(b - a));
+                start = (base + b);
+            }
+            return sub;
+        }
+    }
+    public String toString(){
+        StringBuilder string = new StringBuilder(this.length);
+        for (int seg = 0; seg < this.count; seg++){
+            final int len = (this.offsets[seg+1] - this.offsets[seg]);
+            if (null != this.arrays[seg])
+                string.append(this.arrays[seg],this.from[seg],len);
+            else
+                string.append(this.sequences[seg]);
+        }
+        return string.toString();
+    }
+    /**
+     * @return Number of fragments
+     */
+    public int count(){
+        return this.count;
+    }
+    /**
+     * Sequential access, as for the matches of a scan, finds the
+     * fragment of the last access or the next fragment without
+     * search.
+     * @return Index of the fragment containing the offset, or the
+     * number of fragments for the length or greater
+     */
+    public int segment(int idx){
+        if (0 > idx)
+            throw new IndexOutOfBoundsException(String.valueOf(idx));
+        else if (idx >= this.length)
+            return this.count;
+        else {
+            final int[] offsets = this.offsets;
+            final int last = this.last;
+            if (offsets[last] <= idx){
+                if (idx < offsets[last+1])
+                    return last;
+                else if (idx < offsets[last+2]){
+                    this.last = (last+1);
+                    return (last+1);
+                }
+            }
+            int lo = 0, hi = (this.count-1);
+            while (lo < hi){
+                final int mid = ((lo + hi + 1) >>> 1);
+                if (offsets[mid] <= idx)
+                    lo = mid;
+                else
+                    hi = (mid-1);
+            }
+            this.last = lo;
+            return lo;
+        }
+    }
+    /**
+     * @return Global offset of the fragment
+     */
+    public int offset(int seg){
+        return this.offsets[seg];
+    }
+    /**
+     * @return Array of the fragment, or null for a character
+     * sequence
+     * @see #from(int)
+     */
+    public char[] array(int seg){
+        return this.arrays[seg];
+    }
+    /**
+     * @return Index of the fragment in its array
+     */
+    public int from(int seg){
+        return this.from[seg];
+    }
+    /**
+     * @return Character sequence of the fragment, or null for an
+     * array
+     */
+    public CharSequence sequence(int seg){
+        return this.sequences[seg];
+    }
+
+    private Rope add(char[] array, int from, CharSequence sequence, int len){
+        if (0 < len){
+            if (Integer.MAX_VALUE - this.length < len)
+                throw new IllegalArgumentException("Rope length exceeds int range, see Segmented");
+            else {
+                final int seg = this.count;
+                if (seg == this.arrays.length){
+                    final int grow = (2*seg);
+                    this.arrays = Arrays.copyOf(this.arrays,grow);
+                    this.from = Arrays.copyOf(this.from,grow);
+                    this.sequences = Arrays.copyOf(this.sequences,grow);
+                    this.offsets = Arrays.copyOf(this.offsets,(grow+1));
+                }
+                this.arrays[seg] = array;
+                this.from[seg] = from;
+                this.sequences[seg] = sequence;
+                this.length += len;
+                this.offsets[seg+1] = this.length;
+                this.count = (seg+1);
+            }
+        }
+        return this;
+    }
+}
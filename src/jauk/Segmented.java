@@ -0,0 +1,295 @@
+/*
+ * Jauk
+ * Copyright (C) 2011 John Pritchard
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package jauk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Large input as a list of character buffer segments with long
+ * positions, for input beyond the int range of {@link Scanner}.
+ * Segments are direct buffers decoded from a channel, or buffers of
+ * the caller, as the character view of a mapped file.  A position is
+ * found in its segment by binary search of the segment offsets, and
+ * the run loops of {@link automaton.Compiled} step through each
+ * segment in turn without copying.
+ * 
+ * @see LargeScanner
+ * @author jdp
+ */
+public class Segmented
+    extends Object
+{
+    /**
+     * Default segment size in characters for decoding
+     */
+    public final static int SEGMENT = 0x1000000;
+
+    /**
+     * Map a file of UTF-16 (big endian) characters, without
+     * decoding.
+     * @param segment Characters per segment
+     */
+    public static Segmented Map(File file, int segment)
+        throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            final long size = (channel.size() >>> 1);
+            final int count = (int)((size + segment - 1) / segment);
+            CharBuffer[] segments = new CharBuffer[count];
+            for (int cc = 0; cc < count; cc++){
+                final long ofs = ((long)cc * segment);
+                final long len = Math.min(segment,(size - ofs));
+                segments[cc] = channel.map(FileChannel.MapMode.READ_ONLY,(ofs << 1),(len << 1)).asCharBuffer();
+            }
+            return new Segmented(segments);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+
+    private final CharBuffer[] segments;
+    /*
+     * Position of each segment, and the length
+     */
+    private final long[] offsets;
+
+    private final long length;
+
+
+    /**
+     * @param segments Buffers from their positions to their limits
+     */
+    public Segmented(CharBuffer... segments){
+        super();
+        final int count = segments.length;
+        this.segments = new CharBuffer[count];
+        this.offsets = new long[count+1];
+        long length = 0;
+        for (int cc = 0; cc < count; cc++){
+            this.segments[cc] = segments[cc].slice();
+            this.offsets[cc] = length;
+            length += this.segments[cc].limit();
+        }
+        this.offsets[count] = length;
+        this.length = length;
+    }
+    public Segmented(File source)
+        throws IOException
+    {
+        this(source,Scanner.UTF8);
+    }
+    public Segmented(File source, Charset cs)
+        throws IOException
+    {
+        this(new FileInputStream(source).getChannel(),cs,SEGMENT);
+    }
+    /**
+     * Decode the channel into direct segments.  The channel is
+     * closed.
+     * @param segment Characters per segment
+     */
+    public Segmented(ReadableByteChannel source, Charset cs, int segment)
+        throws IOException
+    {
+        this(Decode(source,cs,segment));
+    }
+
+
+    public long length(){
+        return this.length;
+    }
+    public boolean isEmpty(){
+        return (0L == this.length);
+    }
+    /**
+     * @return Number of segments
+     */
+    public int count(){
+        return this.segments.length;
+    }
+    /**
+     * @return Segment from index zero to its limit
+     */
+    public CharBuffer segment(int idx){
+        return this.segments[idx];
+    }
+    /**
+     * @return Position of the segment
+     */
+    public long offset(int idx){
+        return this.offsets[idx];
+    }
+    /**
+     * @return Index of the segment containing the position, or the
+     * number of segments for the length or greater
+     */
+    public int segment(long position){
+        if (position < 0L)
+            throw new IndexOutOfBoundsException(String.valueOf(position));
+        else if (position >= this.length)
+            return this.segments.length;
+        else {
+            final long[] offsets = this.offsets;
+            int lo = 0, hi = (this.segments.length-1);
+            while (lo < hi){
+                final int mid = ((lo + hi + 1) >>> 1);
+                if (offsets[mid] <= position)
+                    lo = mid;
+                else
+                    hi = (mid-1);
+            }
+            /*
+             * First of any empty segments at the position
+             */
+            while (offsets[lo+1] <= position)
+                lo += 1;
+            return lo;
+        }
+    }
+    public char charAt(long position){
+        final int idx = this.segment(position);
+        if (idx < this.segments.length)
+            return this.segments[idx].get((int)(position - this.offsets[idx]));
+        else
+            throw new IndexOutOfBoundsException(String.valueOf(position));
+    }
+    /**
+     * @return Number of occurrences of the character from start
+     * (inclusive) to end (exclusive), as new lines in a match
+     */
+    public long count(char c, long start, long end){
+        long count = 0L;
+        if (start < end){
+            for (int idx = this.segment(start), z = this.segments.length; idx < z && start < end; idx++){
+                final CharBuffer b = this.segments[idx];
+                final long base = this.offsets[idx];
+                for (int i = (int)(start - base), to = (int)Math.min(b.limit(),(end - base)); i < to; i++){
+                    if (c == b.get(i))
+                        count += 1L;
+                }
+                start = (base + b.limit());
+            }
+        }
+        return count;
+    }
+    /**
+     * @return Characters from start (inclusive) to end (exclusive),
+     * across segments
+     */
+    public String toString(long start, long end){
+        if (start < 0L || end > this.length || end < start || Integer.MAX_VALUE < (end - start))
+            throw new IndexOutOfBoundsException(start+":"+end);
+        else {
+            StringBuilder string = new StringBuilder((int)(end - start));
+            for (int idx = this.segment(start); start < end; idx++){
+                final CharBuffer b = this.segments[idx];
+                final int from = (int)(start - this.offsets[idx]);
+                final int to = (int)Math.min(b.limit(),(end - this.offsets[idx]));
+                string.append(b,from,to);
+                start = (this.offsets[idx] + to);
+            }
+            return string.toString();
+        }
+    }
+
+    /**
+     * @param segment Characters per segment
+     * @return Direct segments, flipped
+     */
+    private static CharBuffer[] Decode(ReadableByteChannel source, Charset cs, int segment)
+        throws IOException
+    {
+        if (0 >= segment)
+            throw new IllegalArgumentException(String.valueOf(segment));
+        try {
+            CharsetDecoder decoder = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer in = ByteBuffer.allocateDirect(0x10000);
+            CharBuffer[] list = new CharBuffer[0x10];
+            int count = 0;
+            CharBuffer out = ByteBuffer.allocateDirect(segment << 1).asCharBuffer();
+            boolean eof = false;
+            while (true){
+                if (!eof && -1 == source.read(in))
+                    eof = true;
+
+                in.flip();
+                CoderResult cr = decoder.decode(in,out,eof);
+                in.compact();
+
+                if (cr.isOverflow()){
+                    /*
+                     * Segment full
+                     */
+                    out.flip();
+                    if (count == list.length)
+                        list = java.util.Arrays.copyOf(list,(2*count));
+                    list[count++] = out;
+                    out = ByteBuffer.allocateDirect(segment << 1).asCharBuffer();
+                }
+                else if (cr.isError())
+                    cr.throwException();
+                else if (eof){
+                    while (decoder.flush(out).isOverflow()){
+                        out.flip();
+                        if (count == list.length)
+                            list = java.util.Arrays.copyOf(list,(2*count));
+                        list[count++] = out;
+                        out = ByteBuffer.allocateDirect(segment << 1).asCharBuffer();
+                    }
+                    out.flip();
+                    if (out.limit() < (out.capacity() >> 1)){
+                        /*
+                         * Release the unused part of the last segment
+                         */
+                        CharBuffer last = ByteBuffer.allocateDirect(Math.max(2,(out.limit() << 1))).asCharBuffer();
+                        last.put(out);
+                        last.flip();
+                        out = last;
+                    }
+                    if (0 < out.limit() || 0 == count){
+                        if (count == list.length)
+                            list = java.util.Arrays.copyOf(list,(2*count));
+                        list[count++] = out;
+                    }
+                    return java.util.Arrays.copyOf(list,count);
+                }
+            }
+        }
+        finally {
+            source.close();
+        }
+    }
+}